@@ -0,0 +1,248 @@
+package project3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/* This class counts the records of a list by the value of each of the fields city, zip, state, country,
+ * business and type (the registration type).
+ * For each field the distinct case folded values get consecutive codes from a StringDictionary and the
+ * counts are kept in an int array indexed by these codes, so the counts of all the fields are computed in a
+ * single pass over the records, and adding a record only increments one counter per field. Records without
+ * a value of the field (null or blank) are not counted for it.
+ * The values of a field in the order of their counts are sorted when they are first requested and kept
+ * until a record is added, so the top values of a field are answered without looking at the records.
+ * An instance is modified only while it is built (build(), copy() and add()); once it is installed in a
+ * list of records it is only read.
+ */
+
+public class Aggregates {
+
+	public static final String [] FIELDS = {"city", "zip", "state", "country", "business", "type"};
+
+	private final Counter [] counters;
+
+	private Aggregates (Counter [] counters) {
+		this.counters = counters;
+	}
+
+	/* Counts the records of the list
+	 * @param records list of records to be counted
+	 * @return the counts of the values of all the fields
+	 */
+	public static Aggregates build (List<Record> records) {
+		Counter [] counters = new Counter [FIELDS.length];
+		for (int f = 0; f < counters.length; f++)
+			counters[f] = new Counter();
+		Aggregates aggregates = new Aggregates(counters);
+		for (Record r : records)
+			aggregates.add(r);
+		return aggregates;
+	}
+
+	/* Counts the records stored in the columns without materializing them: each distinct value of a
+	 * dictionary encoded column is counted once, with its number of rows
+	 * @param columns columns of the records to be counted
+	 * @return the counts of the values of all the fields
+	 */
+	public static Aggregates build (RecordColumns columns) {
+		int [][] codes = columns.codeColumns();
+		StringDictionary [] dictionaries = columns.dictionaries();
+		Counter [] counters = new Counter [FIELDS.length];
+		for (int f = 0; f < counters.length; f++) {
+			counters[f] = new Counter();
+			int [] rows = new int [dictionaries[f].size()];
+			for (int code : codes[f]) {
+				if (code >= 0)
+					rows[code]++;
+			}
+			for (int code = 0; code < rows.length; code++) {
+				String value = dictionaries[f].decode(code);
+				//the zip codes are counted in the form displayed by the records, as in add()
+				counters[f].add(FIELDS[f].equals("zip") && value != null ? Location.changeZip(value) : value, rows[code]);
+			}
+		}
+		return new Aggregates(counters);
+	}
+
+	/* Returns a copy of the counts that can be updated without changing these counts
+	 * @return a copy with the same counts
+	 */
+	Aggregates copy () {
+		Counter [] copies = new Counter [counters.length];
+		for (int f = 0; f < counters.length; f++)
+			copies[f] = counters[f].copy();
+		return new Aggregates(copies);
+	}
+
+	/* Counts one more record
+	 * @param r the record
+	 */
+	void add (Record r) {
+		Location location = r.getLocation();
+		counters[0].add(location == null ? null : location.getCity());
+		counters[1].add(location == null || location.getZip() == null ? null : location.changeZip());
+		counters[2].add(location == null ? null : location.getState());
+		counters[3].add(location == null ? null : location.getCountry());
+		counters[4].add(r.getBusiness());
+		counters[5].add(r.getType());
+	}
+
+	/* Determines if the word is one of the fields that the records are counted by
+	 * @param word the word
+	 * @return true if the word is a field name (case insensitive)
+	 */
+	public static boolean isField (String word) {
+		return fieldIndex(word) >= 0;
+	}
+
+	/* Returns the values of the field with the largest numbers of records,
+	 * values with the same number of records are in alphabetical order
+	 * @param field name of the field (case insensitive)
+	 * @param n largest number of values to return
+	 * @return at most n values with their counts, the most frequent first
+	 * @throws IllegalArgumentException if the field is not known or n is negative
+	 */
+	public List<Count> top (String field, int n) throws IllegalArgumentException {
+		int f = fieldIndex(field);
+		if (f < 0 || n < 0)
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		return counters[f].top(n);
+	}
+
+	/* Finds the count of a value of the field
+	 * @param field name of the field (case insensitive)
+	 * @param value the value (case insensitive)
+	 * @return the value with its count, or null if no record has it
+	 * @throws IllegalArgumentException if the field is not known
+	 */
+	public Count count (String field, String value) throws IllegalArgumentException {
+		int f = fieldIndex(field);
+		if (f < 0)
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		return counters[f].count(value);
+	}
+
+	/* Returns the number of distinct values of the field
+	 * @param field name of the field (case insensitive)
+	 * @return the number of distinct values
+	 * @throws IllegalArgumentException if the field is not known
+	 */
+	public int distinct (String field) throws IllegalArgumentException {
+		int f = fieldIndex(field);
+		if (f < 0)
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		return counters[f].keys.size();
+	}
+
+
+	/*
+	 * Helper method that returns the position of the field in FIELDS, or -1.
+	 */
+	private static int fieldIndex (String word) {
+		for (int f = 0; f < FIELDS.length; f++) {
+			if (FIELDS[f].equalsIgnoreCase(word))
+				return f;
+		}
+		return -1;
+	}
+
+	/*
+	 * Counts of the values of one field.
+	 */
+	private static class Counter {
+		//codes of the case folded values, the displayed spelling of each value and the number of records with it
+		private final StringDictionary keys = new StringDictionary();
+		private String [] values = new String [16];
+		private int [] counts = new int [16];
+
+		//codes in the order of the counts, null until they are first requested after a change
+		private volatile int [] order;
+
+		Counter copy () {
+			Counter copy = new Counter();
+			for (int code = 0; code < keys.size(); code++)
+				copy.keys.encode(keys.decode(code));
+			copy.values = values.clone();
+			copy.counts = counts.clone();
+			return copy;
+		}
+
+		void add (String value) {
+			add(value, 1);
+		}
+
+		void add (String value, int rows) {
+			if (value == null || value.isBlank() || rows == 0)
+				return;
+			int code = keys.encode(CaseFold.fold(value));
+			if (code == counts.length) {
+				counts = Arrays.copyOf(counts, code * 2);
+				values = Arrays.copyOf(values, code * 2);
+			}
+			if (values[code] == null || value.compareTo(values[code]) < 0)
+				values[code] = value;
+			counts[code] += rows;
+			order = null;
+		}
+
+		Count count (String value) {
+			int code = keys.codeOf(CaseFold.fold(value));
+			return code < 0 ? null : new Count(values[code], counts[code]);
+		}
+
+		List<Count> top (int n) {
+			int [] sorted = order;
+			if (sorted == null) {
+				Integer [] codes = new Integer [keys.size()];
+				for (int code = 0; code < codes.length; code++)
+					codes[code] = code;
+				Arrays.sort(codes, (a, b) -> counts[a] != counts[b] ? Integer.compare(counts[b], counts[a]) : keys.decode(a).compareTo(keys.decode(b)));
+				sorted = new int [codes.length];
+				for (int i = 0; i < codes.length; i++)
+					sorted[i] = codes[i];
+				order = sorted;
+			}
+			List<Count> top = new ArrayList<Count>();
+			for (int i = 0; i < sorted.length && i < n; i++)
+				top.add(new Count(values[sorted[i]], counts[sorted[i]]));
+			return top;
+		}
+	}
+
+	/*
+	 * A value of a field and the number of records with it.
+	 */
+	public static class Count {
+		private final String value;
+		private final int count;
+
+		Count (String value, int count) {
+			this.value = value;
+			this.count = count;
+		}
+
+		/* Returns the value as it is displayed: of the different spellings of the value in the records
+		 * (which differ only in case) the smallest one in String order, so the result does not depend on the order of the records
+		 * @return the value
+		 */
+		public String getValue () {
+			return value;
+		}
+
+		/* Returns the number of records with the value
+		 * @return the number of records
+		 */
+		public int getCount () {
+			return count;
+		}
+
+		/* Returns the count in the format VALUE (COUNT records)
+		 */
+		@Override
+		public String toString () {
+			return value + " (" + count + (count == 1 ? " record)" : " records)");
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package project3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming counterpart of the {@link CSV} parser.
+ *
+ * <p>Instead of reading the entire input into memory before the first row is available,
+ * this class reads the input through a fixed size buffer and parses one row at a time.
+ * Rows are produced in the same order and with the same quoting rules as {@link CSV}:
+ * entries are separated with commas, entries that contain commas or newlines are surrounded
+ * by double quotes, whitespace between entries is skipped and the last entry of each row is trimmed.
+ *
+ * <p>Sample use of this class:
+ *
+ * <pre>{@code
+ *
+ * 		//print each row from the file FILE_NAME.CSV
+ *		try (CSVStream csv = new CSVStream( new FileInputStream("FILE_NAME.CSV") )) {
+ *			while (csv.hasNext()) {
+ *				System.out.println( csv.next() + "\n");
+ *			}
+ *		}
+ * }</pre>
+ *
+ * The rows can also be consumed as a {@link Stream} using {@link #stream()}.
+ *
+ */
+
+public class CSVStream implements Iterator<ArrayList<String>>, Closeable {
+
+	//size of the character buffer used for reading the input
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Reader in;
+	private final char [] buffer = new char [BUFFER_SIZE];
+
+	//position of the next unread character in the buffer and number of valid characters in it
+	private int position;
+	private int limit;
+
+	//the entry that is currently being parsed, reused for all the entries
+	private final StringBuilder nextWord = new StringBuilder();
+
+	//the row that will be returned by the next call to next(), null if it has not been parsed yet
+	private ArrayList<String> nextRow;
+	private boolean endOfInput;
+
+
+	/**
+	 * Constructs a CSVStream object that reads its rows from the provided Reader object.
+	 * The Reader is closed when this object is closed.
+	 * @param in reader from which the data should be read
+	 * @throws NullPointerException when {@code in} is null
+	 */
+	public CSVStream( Reader in ) {
+		if (in == null ) throw new NullPointerException("Reader in is null");
+		this.in = in;
+	}
+
+	/**
+	 * Constructs a CSVStream object that reads its rows from the provided InputStream object.
+	 * The input is decoded as UTF-8. The InputStream is closed when this object is closed.
+	 * @param in stream from which the data should be read
+	 * @throws NullPointerException when {@code in} is null
+	 */
+	public CSVStream( InputStream in ) {
+		this( new InputStreamReader( requireStream(in), StandardCharsets.UTF_8) );
+	}
+
+	private static InputStream requireStream ( InputStream in ) {
+		if (in == null ) throw new NullPointerException("InputStream in is null");
+		return in;
+	}
+
+	/**
+	 * Returns true if there is at least one more row in the input.
+	 * @return true if the next call to {@link #next()} will return a row
+	 * @throws UncheckedIOException when the input cannot be read
+	 */
+	@Override
+	public boolean hasNext() {
+		if (nextRow == null && !endOfInput ) {
+			nextRow = parseRow();
+		}
+		return nextRow != null;
+	}
+
+	/**
+	 * Returns a list of entries from the next row.
+	 * @return the next row from the input
+	 * @throws NoSuchElementException when there are no more rows
+	 * @throws UncheckedIOException when the input cannot be read
+	 */
+	@Override
+	public ArrayList<String> next() {
+		if (!hasNext()) throw new NoSuchElementException("no more rows");
+		ArrayList<String> row = nextRow;
+		nextRow = null;
+		return row;
+	}
+
+	/**
+	 * Returns a sequential, ordered stream of the remaining rows.
+	 * Closing the returned stream closes this object.
+	 * @return stream of the remaining rows
+	 */
+	public Stream<ArrayList<String>> stream() {
+		Spliterator<ArrayList<String>> rows = Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL );
+		return StreamSupport.stream(rows, false).onClose( () -> {
+			try {
+				close();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+	}
+
+	/**
+	 * Closes the underlying input.
+	 */
+	@Override
+	public void close() throws IOException {
+		endOfInput = true;
+		in.close();
+	}
+
+
+	/*
+	 * Helper method that returns the next character from the input or -1 at the end of the input.
+	 */
+	private int read () {
+		if (position == limit ) {
+			try {
+				int count;
+				do {
+					count = in.read(buffer, 0, buffer.length);
+				} while (count == 0);
+				if (count < 0) {
+					endOfInput = true;
+					return -1;
+				}
+				position = 0;
+				limit = count;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		return buffer[position++];
+	}
+
+	/*
+	 * Helper method that parses the next row from the input.
+	 * Follows the same rules as CSV.parseFile().
+	 * Returns null when there are no more characters in the input. A single line terminator 
+	 * at the very end of the input does not start a new row (CSV drops it when reading the file). 
+	 */
+	private ArrayList<String> parseRow () {
+
+		int next = read();
+		if (next < 0 ) return null;
+
+		ArrayList<String> currentLine = new ArrayList<String>();
+		nextWord.setLength(0);
+		boolean insideQuotes = false;
+		boolean insideEntry= false;
+		boolean endOfLine = false;
+		int consumed = 0;
+		boolean onlyBreaks = true;
+
+		for ( ; next >= 0; next = read() ) {
+			char nextChar = (char) next;
+			consumed++;
+			onlyBreaks &= (nextChar == '\n' || nextChar == '\r');
+
+			// handle regular quotes as field separators,
+			// (smart quotes are used within entries)
+			if (nextChar == '"' ) {
+				insideQuotes = !insideQuotes;
+				insideEntry = insideQuotes;
+			} else if (Character.isWhitespace(nextChar)) {
+				// if new line outside of quotes, this is the end of this row
+				if (nextChar == '\n' && !insideQuotes) {
+					endOfLine = true;
+					break;
+				}
+				else if ( insideQuotes || insideEntry ) {
+					// add it to the current entry
+					nextWord.append( nextChar );
+				}
+				// otherwise skip all spaces between entries
+			} else if ( nextChar == ',') {
+				if (insideQuotes){ // comma inside an entry
+					nextWord.append(nextChar);
+				} else { // end of entry found
+					insideEntry = false;
+					currentLine.add(nextWord.toString());
+					nextWord.setLength(0);
+				}
+			} else {
+				// add all other characters to the nextWord
+				nextWord.append(nextChar);
+				insideEntry = true;
+			}
+		}
+
+		// a trailing line terminator is not a row on its own
+		if (currentLine.isEmpty() && nextWord.length() == 0 && onlyBreaks && isTerminator(consumed, endOfLine) && atEnd() ) {
+			return null;
+		}
+
+		// add the last word ( assuming not empty )
+		// trim the white space before adding to the list
+		if (nextWord.length() > 0) {
+			currentLine.add(nextWord.toString().trim());
+		}
+
+		return currentLine;
+	}
+
+	/*
+	 * Helper method that determines if an empty row consisted of only "\n", "\r\n" or "\r".
+	 */
+	private static boolean isTerminator ( int consumed, boolean endOfLine ) {
+		return consumed == 1 || (consumed == 2 && endOfLine);
+	}
+
+	/*
+	 * Helper method that checks if all the characters have been read without consuming the next one.
+	 */
+	private boolean atEnd () {
+		if (read() < 0 ) return true;
+		position--;
+		return false;
+	}
+}
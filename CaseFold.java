@@ -0,0 +1,38 @@
+package project3;
+
+
+/* This class converts strings to the form used for case insensitive matching and ordering. 
+ * Each character c is replaced by Character.toLowerCase(Character.toUpperCase(c)), the same 
+ * conversion that String.compareToIgnoreCase() applies to every character it compares. 
+ * Comparing two folded strings with String.compareTo() therefore gives the same order as 
+ * comparing the original strings with String.compareToIgnoreCase(), and finding a folded keyword 
+ * in a folded string with String.contains() does not allocate anything. 
+ */
+
+final class CaseFold {
+	
+	private CaseFold() {}
+	
+	/* Returns the folded version of the string 
+	 * @param s string to be folded 
+	 * @return folded string, the string itself if it is already folded, or an empty string if s is null 
+	 */
+	static String fold (String s) {
+		if (s == null) 
+			return ""; 
+		int i = 0; 
+		while (i < s.length() && fold(s.charAt(i)) == s.charAt(i)) 
+			i++; 
+		if (i == s.length()) 
+			return s; 
+		
+		char [] folded = s.toCharArray(); 
+		for ( ; i < folded.length; i++) 
+			folded[i] = fold(folded[i]); 
+		return new String(folded); 
+	}
+	
+	private static char fold (char c) {
+		return Character.toLowerCase(Character.toUpperCase(c)); 
+	}
+}
@@ -0,0 +1,235 @@
+package project3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/* This class is a prefix index of the distinct last names and cities of a list of records.
+ * The distinct case folded values are stored in a sorted array, so the values that start with a prefix
+ * form a range of the array that is found with two binary searches. Each value has the number of records
+ * with it, and a sparse table over these counts finds the most frequent value of any range in constant time.
+ * The k most frequent completions of a prefix are then found by repeatedly splitting the range around its
+ * most frequent value, which takes O(log n + k log k) time however many values start with the prefix.
+ * The index is immutable once built and does not change when the list of records changes.
+ */
+
+public class CompletionIndex {
+
+	public static final String LAST_NAME = "last name";
+	public static final String CITY = "city";
+
+	//sorted case folded values, the kind of each value, its spelling in the data set and its number of records
+	private final String [] keys;
+	private final String [] kinds;
+	private final String [] values;
+	private final int [] counts;
+
+	//best[j][i] is the position of the most frequent value in keys[i .. i + 2^j - 1]
+	private final int [][] best;
+
+	private CompletionIndex (String [] keys, String [] kinds, String [] values, int [] counts) {
+		this.keys = keys;
+		this.kinds = kinds;
+		this.values = values;
+		this.counts = counts;
+
+		int levels = 1;
+		while ((1 << levels) <= keys.length)
+			levels++;
+		best = new int [levels][];
+		best[0] = new int [keys.length];
+		for (int i = 0; i < keys.length; i++)
+			best[0][i] = i;
+		for (int j = 1; j < levels; j++) {
+			int half = 1 << (j - 1);
+			best[j] = new int [keys.length - (1 << j) + 1];
+			for (int i = 0; i < best[j].length; i++)
+				best[j][i] = better(best[j - 1][i], best[j - 1][i + half]);
+		}
+	}
+
+	/* Builds the index for the list of records
+	 * @param records list of records to be indexed
+	 * @return index of the last names and the cities of the records
+	 */
+	public static CompletionIndex build (List<Record> records) {
+		//the first spelling of each folded value in the list is the one that is displayed
+		Map<String, Integer> positions = new HashMap<String, Integer>();
+		List<String> keys = new ArrayList<String>();
+		List<String> kinds = new ArrayList<String>();
+		List<String> values = new ArrayList<String>();
+		int [] counts = new int [16];
+		for (Record r : records) {
+			Name name = r.getName();
+			Location location = r.getLocation();
+			String [][] entries = {
+				{ LAST_NAME, name == null ? null : name.getLastNameKey(), name == null ? null : name.getLastName() },
+				{ CITY, location == null ? null : location.getCityKey(), location == null ? null : location.getCity() }
+			};
+			for (String [] entry : entries) {
+				if (entry[1] == null || entry[1].isBlank())
+					continue;
+				Integer position = positions.get(entry[0].charAt(0) + entry[1]);
+				if (position == null) {
+					position = keys.size();
+					positions.put(entry[0].charAt(0) + entry[1], position);
+					kinds.add(entry[0]);
+					keys.add(entry[1]);
+					values.add(entry[2]);
+					if (position == counts.length)
+						counts = Arrays.copyOf(counts, position * 2);
+				}
+				counts[position]++;
+			}
+		}
+
+		//sort the values by key, then by kind
+		Integer [] order = new Integer [keys.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> {
+			int c = keys.get(a).compareTo(keys.get(b));
+			return c != 0 ? c : kinds.get(a).compareTo(kinds.get(b));
+		});
+		String [] sortedKeys = new String [order.length];
+		String [] sortedKinds = new String [order.length];
+		String [] sortedValues = new String [order.length];
+		int [] sortedCounts = new int [order.length];
+		for (int i = 0; i < order.length; i++) {
+			sortedKeys[i] = keys.get(order[i]);
+			sortedKinds[i] = kinds.get(order[i]);
+			sortedValues[i] = values.get(order[i]);
+			sortedCounts[i] = counts[order[i]];
+		}
+		return new CompletionIndex(sortedKeys, sortedKinds, sortedValues, sortedCounts);
+	}
+
+	/* Returns the most frequent last names and cities that start with the prefix (case insensitive),
+	 * values with the same number of records are in alphabetical order
+	 * @param foldedPrefix case folded prefix
+	 * @param k largest number of completions
+	 * @return at most k completions, the most frequent first
+	 */
+	public List<Completion> complete (String foldedPrefix, int k) {
+		int from = lowerBound(foldedPrefix);
+		int to = lowerBound(foldedPrefix + Character.MAX_VALUE) - 1;
+		List<Completion> completions = new ArrayList<Completion>();
+		if (from > to || k <= 0)
+			return completions;
+
+		//each range is represented by its most frequent position; the queue holds the ranges that were split off
+		PriorityQueue<int []> ranges = new PriorityQueue<int []>( (a, b) -> a[2] == b[2] ? 0 : (better(a[2], b[2]) == a[2] ? -1 : 1) );
+		ranges.add(new int [] {from, to, best(from, to)});
+		while (!ranges.isEmpty() && completions.size() < k) {
+			int [] range = ranges.poll();
+			int top = range[2];
+			completions.add(new Completion(values[top], kinds[top], counts[top]));
+			if (range[0] < top)
+				ranges.add(new int [] {range[0], top - 1, best(range[0], top - 1)});
+			if (top < range[1])
+				ranges.add(new int [] {top + 1, range[1], best(top + 1, range[1])});
+		}
+		return completions;
+	}
+
+	/* Finds a value of the index
+	 * @param foldedValue case folded last name or city
+	 * @param kind LAST_NAME or CITY
+	 * @return the value with its number of records, or null if no record has it
+	 */
+	public Completion find (String foldedValue, String kind) {
+		for (int i = lowerBound(foldedValue); i < keys.length && keys[i].equals(foldedValue); i++) {
+			if (kinds[i].equals(kind))
+				return new Completion(values[i], kinds[i], counts[i]);
+		}
+		return null;
+	}
+
+	/* Returns the number of distinct values in the index
+	 * @return the number of last names and cities
+	 */
+	public int size () {
+		return keys.length;
+	}
+
+
+	/*
+	 * Helper method that returns the position of the most frequent value in keys[from .. to].
+	 */
+	private int best (int from, int to) {
+		int level = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+		return better(best[level][from], best[level][to - (1 << level) + 1]);
+	}
+
+	/*
+	 * Helper method that returns the position with the larger count, or the smaller position for equal counts.
+	 */
+	private int better (int a, int b) {
+		if (counts[a] != counts[b])
+			return counts[a] > counts[b] ? a : b;
+		return Math.min(a, b);
+	}
+
+	/*
+	 * Helper method that finds the first position whose key is not smaller than the value.
+	 */
+	private int lowerBound (String value) {
+		int from = 0;
+		int to = keys.length;
+		while (from < to) {
+			int mid = (from + to) >>> 1;
+			if (keys[mid].compareTo(value) < 0)
+				from = mid + 1;
+			else
+				to = mid;
+		}
+		return from;
+	}
+
+	/*
+	 * A completion of a prefix: a last name or a city and the number of records with it.
+	 */
+	public static class Completion {
+		private final String value;
+		private final String kind;
+		private final int count;
+
+		Completion (String value, String kind, int count) {
+			this.value = value;
+			this.kind = kind;
+			this.count = count;
+		}
+
+		/* Returns the completed value as it is spelled in the data set
+		 * @return the value
+		 */
+		public String getValue () {
+			return value;
+		}
+
+		/* Returns the kind of the value
+		 * @return LAST_NAME or CITY
+		 */
+		public String getKind () {
+			return kind;
+		}
+
+		/* Returns the number of records with the value
+		 * @return the number of records
+		 */
+		public int getCount () {
+			return count;
+		}
+
+		/* Returns the completion in the format VALUE (KIND, COUNT records)
+		 */
+		@Override
+		public String toString () {
+			return value + " (" + kind + ", " + count + (count == 1 ? " record)" : " records)");
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package project3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A query with several predicates that all have to match, for example
+ * {@code name smith city brooklyn type facilitator state NY}.
+ *
+ * <p>The fields that can be used in the predicates are:
+ * <ul>
+ * <li>{@code name}, {@code city} and {@code zip}, with the same meaning as the single queries
+ * ({@link RecordList#getByName(String)}, {@link RecordList#getByCity(String)} and {@link RecordList#getByZip(String)}),</li>
+ * <li>{@code business}, a substring of the business name,</li>
+ * <li>{@code type}, {@code state} and {@code country}, the exact registration type, state or country.</li>
+ * </ul>
+ * All the comparisons are case insensitive.
+ *
+ * <p>On an indexed list each predicate is resolved to the set of the ids of its matching records,
+ * using the indexes and the columns, and stored as an {@link IdBitmap}. The sets are intersected from
+ * the smallest to the largest and only the records of the final set are added to the result.
+ * On a list that is not indexed the records are scanned and the matches are sorted.
+ *
+ */
+
+public class CompoundQuery {
+
+	private static final String [] FIELDS = {"name", "city", "zip", "business", "type", "state", "country"};
+
+	private final List<String> fields = new ArrayList<String>();
+	private final List<String> values = new ArrayList<String>();
+
+	/**
+	 * Determines if the word is one of the fields that can be used in a predicate.
+	 * @param word the word
+	 * @return true if the word is a field name (case insensitive)
+	 */
+	public static boolean isField ( String word ) {
+		for (String field : FIELDS) {
+			if (field.equalsIgnoreCase(word)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a predicate to the query.
+	 * @param field name of the field
+	 * @param value the value, or the substring, that the field has to match
+	 * @return this query
+	 * @throws IllegalArgumentException if the field is not known, the value is null or blank, or the value
+	 * of a zip predicate is not a valid zip code (see {@link RecordList#getByZip(String)})
+	 */
+	public CompoundQuery add ( String field, String value ) throws IllegalArgumentException {
+		if (field == null || !isField(field)) {
+			throw new IllegalArgumentException("This is not a valid query. Unknown field " + field + ".");
+		}
+		if (value == null || value.isBlank()) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		field = CaseFold.fold(field);
+		if (field.equals("zip") && (value.length() != 5 || value.matches(".*[a-z].*"))) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		fields.add(field);
+		values.add(field.equals("zip") ? value : CaseFold.fold(value));
+		return this;
+	}
+
+	/**
+	 * Returns the number of predicates of the query.
+	 * @return the number of predicates
+	 */
+	public int size () {
+		return fields.size();
+	}
+
+	/**
+	 * Returns the records that match all the predicates of the query.
+	 * @param records list of records to search
+	 * @return sorted list of the matching records, or null if there are none
+	 * @throws IllegalStateException if the query has no predicates
+	 */
+	public RecordList execute ( RecordList records ) {
+		if (fields.isEmpty()) throw new IllegalStateException("the query has no predicates");
+
+		if (records.isIndexed()) {
+			//resolve every predicate to a set of ids and intersect them starting with the smallest set
+			List<IdBitmap> sets = new ArrayList<IdBitmap>();
+			for (int p = 0; p < fields.size(); p++) {
+				IdBitmap set = resolve(p, records);
+				if (set.cardinality() == 0) return null;
+				sets.add(set);
+			}
+			sets.sort( (a, b) -> Integer.compare(a.cardinality(), b.cardinality()) );
+			IdBitmap ids = sets.get(0);
+			for (int i = 1; i < sets.size() && ids.cardinality() > 0; i++) {
+				ids = ids.and(sets.get(i));
+			}
+			int [] found = ids.toArray();
+			return found.length == 0 ? null : records.select(found);
+		}
+
+		RecordList result = new RecordList();
+		for (Record r : records) {
+			if (matchesAll(r)) result.add(r);
+		}
+		Collections.sort(result);
+		return result.isEmpty() ? null : result;
+	}
+
+	/**
+	 * Returns the query in the format {@code field value field value ...}, with the values case folded.
+	 * @return the predicates of the query
+	 */
+	@Override
+	public String toString () {
+		StringBuilder text = new StringBuilder();
+		for (int p = 0; p < fields.size(); p++) {
+			if (p > 0) text.append(' ');
+			text.append(fields.get(p)).append(' ').append(values.get(p));
+		}
+		return text.toString();
+	}
+
+
+	/*
+	 * Helper method that finds the ids of the records of an indexed list that match the predicate.
+	 */
+	private IdBitmap resolve ( int p, RecordList records ) {
+		String value = values.get(p);
+		RecordColumns columns = records.getColumns();
+		switch (fields.get(p)) {
+		case "name":
+			int [] candidates = records.getNameIndex().candidates(value);
+			if (candidates == null) {
+				return IdBitmap.of(columns.matchName(value));
+			}
+			return IdBitmap.of(columns.filterName(candidates, value, Integer.MAX_VALUE));
+		case "city":
+			return IdBitmap.of(columns.matchCity(value));
+		case "zip":
+			int [] ids = records.getZipIndex().lookup(value, records);
+			return IdBitmap.of(ids != null ? ids : scan(records, p));
+		case "business":
+			return IdBitmap.of(columns.matchBusiness(value));
+		case "type":
+			return IdBitmap.of(columns.matchType(value));
+		case "state":
+			return IdBitmap.of(columns.matchState(value));
+		default:
+			return IdBitmap.of(columns.matchCountry(value));
+		}
+	}
+
+	/*
+	 * Helper method that finds the ids of the records that match the predicate by checking every record.
+	 */
+	private int [] scan ( RecordList records, int p ) {
+		int [] ids = new int [16];
+		int count = 0;
+		for (int id = 0; id < records.size(); id++) {
+			if (!matches(p, records.get(id))) continue;
+			if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+			ids[count++] = id;
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	private boolean matchesAll ( Record r ) {
+		for (int p = 0; p < fields.size(); p++) {
+			if (!matches(p, r)) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Helper method that determines if the record matches the predicate.
+	 */
+	private boolean matches ( int p, Record r ) {
+		String value = values.get(p);
+		Location location = r.getLocation();
+		switch (fields.get(p)) {
+		case "name":
+			return r.getName() != null && r.getName().containsFolded(value);
+		case "city":
+			return location != null && location.containsFolded(value);
+		case "zip":
+			return location != null && location.getZip() != null && location.changeZip().contains(value);
+		case "business":
+			return CaseFold.fold(r.getBusiness()).contains(value);
+		case "type":
+			return CaseFold.fold(r.getType()).equals(value);
+		case "state":
+			return location != null && CaseFold.fold(location.getState()).equals(value);
+		default:
+			return location != null && CaseFold.fold(location.getCountry()).equals(value);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package project3;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the records of a CSV file up to date while the file changes.
+ *
+ * <p>The current version of the data set is a sorted and indexed {@link RecordList} that is never
+ * modified. When the file changes a new list is built in the background and then published with a
+ * single atomic reference update. A query reads {@link #current()} once and runs against that version
+ * until it finishes, so queries never wait for a reload and never see a partially built version.
+ *
+ * <p>When the file only grew, the rows after the part that was already loaded are parsed and
+ * merged into a copy of the current records. The file is considered to have only grown if the loaded part
+ * ended with a newline and its last {@value #TAIL_SIZE} bytes did not change. Any other change reloads the
+ * whole file with {@link Snapshot#load(File, long, long)}. A change is loaded once the size and the modification
+ * time of the file are the same in two consecutive checks, so a file that is being written is not loaded
+ * halfway through a row.
+ *
+ */
+
+public class DataSetWatcher implements Closeable {
+
+	//number of bytes at the end of the loaded part of the file that have to be unchanged for an append
+	private static final int TAIL_SIZE = 4096;
+
+	private final File file;
+	private final Supplier<QueryCache> caches;
+	private final AtomicReference<Version> current = new AtomicReference<Version>();
+
+	private ScheduledExecutorService watcher;
+
+	//size and modification time of the file seen by the previous check
+	private long seenLength = -1;
+	private long seenModified = -1;
+
+	private volatile long reloads;
+	private volatile long appends;
+	private volatile Exception lastError;
+
+	/**
+	 * Loads the file and constructs a watcher for it. The file is not watched until {@link #start(long)} is called.
+	 * @param file the CSV file
+	 * @param caches supplies an empty cache for the query results of each version, or null if the results should not be cached
+	 * @throws IOException when the file cannot be read
+	 */
+	public DataSetWatcher ( File file, Supplier<QueryCache> caches ) throws IOException {
+		this.file = file;
+		this.caches = caches;
+		current.set(loadAll());
+	}
+
+	/**
+	 * Returns the current version of the records.
+	 * The returned list must not be modified, a later version is published as a different list.
+	 * @return sorted and indexed list of the valid records of the file
+	 */
+	public RecordList current () {
+		return current.get().records;
+	}
+
+	/**
+	 * Starts a background daemon thread that checks the file for changes.
+	 * @param intervalMillis time between the checks in milliseconds
+	 * @throws IllegalStateException when the watcher was already started
+	 */
+	public synchronized void start ( long intervalMillis ) {
+		if (watcher != null) throw new IllegalStateException("the watcher was already started");
+		watcher = Executors.newSingleThreadScheduledExecutor( task -> {
+			Thread thread = new Thread(task, "DataSetWatcher " + file.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		watcher.scheduleWithFixedDelay( () -> {
+			try {
+				check();
+			}
+			catch (IOException | RuntimeException ex) {
+				//the current version stays published, the next check tries again
+				lastError = ex;
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Checks the file once and publishes a new version if the file changed and stopped changing.
+	 * @return true if a new version was published
+	 * @throws IOException when the file cannot be read
+	 */
+	public synchronized boolean check () throws IOException {
+		Version version = current.get();
+		long length = file.length();
+		long modified = file.lastModified();
+		if (length == version.length && modified == version.modified) {
+			return false;
+		}
+		if (length != seenLength || modified != seenModified) {
+			//the file is still changing, load it after the next check
+			seenLength = length;
+			seenModified = modified;
+			return false;
+		}
+
+		Version next = version.endsWithNewline && length > version.loaded && tailChecksum(version.loaded) == version.tailChecksum
+				? append(version, length, modified)
+				: loadAll();
+		current.set(next);
+		return true;
+	}
+
+	/**
+	 * Returns the number of times the whole file was reloaded after the first load.
+	 * @return the number of full reloads
+	 */
+	public long getReloads () {
+		return reloads;
+	}
+
+	/**
+	 * Returns the number of times the rows appended to the file were added to the records.
+	 * @return the number of appends
+	 */
+	public long getAppends () {
+		return appends;
+	}
+
+	/**
+	 * Returns the failure of the most recent background check that failed.
+	 * @return the failure, or null if no check failed
+	 */
+	public Exception getLastError () {
+		return lastError;
+	}
+
+	/**
+	 * Stops watching the file. The current version remains available.
+	 */
+	@Override
+	public synchronized void close () {
+		if (watcher != null) {
+			watcher.shutdownNow();
+		}
+	}
+
+
+	/*
+	 * Helper method that loads the whole file. The size and the modification time taken before the load are
+	 * the ones the snapshot is checked against and stamped with, and the ones recorded in the version.
+	 * The file is loaded again if it changed while it was loaded, so that they describe the loaded content.
+	 */
+	private Version loadAll () throws IOException {
+		while (true) {
+			long length = file.length();
+			long modified = file.lastModified();
+			RecordList records = Snapshot.load(file, length, modified);
+			Version version = newVersion(records, length, modified, length);
+			if (length != file.length() || modified != file.lastModified()) {
+				continue;
+			}
+			if (current.get() != null) reloads++;
+			return version;
+		}
+	}
+
+	/*
+	 * Helper method that adds the complete rows appended after the loaded part of the file to the records of a new version.
+	 * Only the new rows are parsed, sorted and indexed, then they are merged with the columns and the indexes of the
+	 * current version (see RecordList.merge()), whose records are not materialized.
+	 */
+	private Version append ( Version version, long length, long modified ) throws IOException {
+		long end = lastRowEnd(version.loaded, length);
+		if (end == version.loaded) {
+			//no complete row was appended yet
+			return new Version(version.records, length, modified, version.loaded, version.endsWithNewline, version.tailChecksum);
+		}
+		long start = System.nanoTime();
+		RecordList records = version.records.merge(RecordLoader.readRange(file, version.loaded, end, new StringPool()));
+		Metrics.global().phase(Metrics.APPEND, System.nanoTime() - start);
+		appends++;
+		if (end == length) {
+			//the snapshot is stamped with the size and the modification time of the check that found the appended
+			//rows, which describe the loaded bytes even if the file keeps growing
+			try {
+				Snapshot.write(file, records, end, modified);
+			}
+			catch (IOException ex) {
+				//the snapshot is only an optimization
+			}
+		}
+		return newVersion(records, length, modified, end);
+	}
+
+	/*
+	 * Helper method that creates the version for the records of the first loaded bytes of the file.
+	 */
+	private Version newVersion ( RecordList records, long length, long modified, long loaded ) throws IOException {
+		records.setCache(caches == null ? null : caches.get());
+		boolean endsWithNewline = loaded > 0 && read(loaded - 1, 1).get(0) == '\n';
+		return new Version(records, length, modified, loaded, endsWithNewline, tailChecksum(loaded));
+	}
+
+	/*
+	 * Helper method that finds the position just after the last newline in the range of the file,
+	 * or the beginning of the range if it does not contain a newline.
+	 */
+	private long lastRowEnd ( long from, long to ) throws IOException {
+		ByteBuffer bytes = read(from, to - from);
+		for (int i = bytes.limit() - 1; i >= 0; i--) {
+			if (bytes.get(i) == '\n') return from + i + 1;
+		}
+		return from;
+	}
+
+	/*
+	 * Helper method that computes the checksum of the last TAIL_SIZE bytes before the position.
+	 */
+	private long tailChecksum ( long end ) throws IOException {
+		long from = Math.max(0, end - TAIL_SIZE);
+		CRC32 crc = new CRC32();
+		crc.update(read(from, end - from));
+		return crc.getValue();
+	}
+
+	/*
+	 * Helper method that maps a range of the file.
+	 */
+	private MappedByteBuffer read ( long from, long size ) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, from, size);
+		}
+	}
+
+	/*
+	 * A published version of the data set: the records and the state of the file they were loaded from.
+	 */
+	private static class Version {
+		final RecordList records;
+		final long length;
+		final long modified;
+		final long loaded;  //number of bytes of the file that were loaded
+		final boolean endsWithNewline;
+		final long tailChecksum;
+
+		Version ( RecordList records, long length, long modified, long loaded, boolean endsWithNewline, long tailChecksum ) {
+			this.records = records;
+			this.length = length;
+			this.modified = modified;
+			this.loaded = loaded;
+			this.endsWithNewline = endsWithNewline;
+			this.tailChecksum = tailChecksum;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package project3;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/* This class is an index for approximate matching of the last and first names of a list of records.
+ * The terms of the index are the distinct case folded last and first names, and the words of the
+ * names that consist of several words. For each term the index stores the sorted ids (positions in
+ * the list) of the records that contain it.
+ * The terms are organized in a BK-tree: the edge from a term to its child is labeled with the edit
+ * (Levenshtein) distance between them. By the triangle inequality, the terms within distance k of a
+ * query whose distance from a node is d can only be below the children with labels between d-k and d+k,
+ * so a lookup compares the query with a small part of the terms.
+ * The index is immutable once built and does not change when the list of records changes.
+ */
+
+public class FuzzyIndex {
+
+	//largest number of edits that can be requested
+	public static final int MAX_EDITS = 3;
+
+	//sorted distinct terms, and the ids of the records with term t are ids[starts[t]] to ids[starts[t+1]-1]
+	private final String [] terms;
+	private final int [] starts;
+	private final int [] ids;
+
+	//BK-tree over the terms, the root is term 0: first child, next sibling and distance to the parent of each term
+	private final int [] firstChild;
+	private final int [] nextSibling;
+	private final int [] edge;
+
+	private FuzzyIndex (String [] terms, int [] starts, int [] ids) {
+		this.terms = terms;
+		this.starts = starts;
+		this.ids = ids;
+		this.firstChild = new int [terms.length];
+		this.nextSibling = new int [terms.length];
+		this.edge = new int [terms.length];
+		Arrays.fill(firstChild, -1);
+		Arrays.fill(nextSibling, -1);
+		for (int t = 1; t < terms.length; t++)
+			insert(t);
+	}
+
+	/* Builds the index for the list of records, the position of each record in the list is its id
+	 * @param records list of records to be indexed
+	 * @return index of the names of the records
+	 */
+	public static FuzzyIndex build (List<Record> records) {
+		Map<String, int []> postings = new HashMap<String, int []>();
+		for (int id = 0; id < records.size(); id++) {
+			Name name = records.get(id).getName();
+			if (name == null)
+				continue;
+			addTerms(postings, name.getLastNameKey(), id);
+			addTerms(postings, name.getFirstNameKey(), id);
+		}
+
+		String [] terms = postings.keySet().toArray(new String [0]);
+		Arrays.sort(terms);
+		int [] starts = new int [terms.length + 1];
+		for (int t = 0; t < terms.length; t++)
+			starts[t + 1] = starts[t] + postings.get(terms[t])[0];
+		int [] ids = new int [starts[terms.length]];
+		for (int t = 0; t < terms.length; t++) {
+			int [] list = postings.get(terms[t]);
+			System.arraycopy(list, 1, ids, starts[t], list[0]);
+		}
+		return new FuzzyIndex(terms, starts, ids);
+	}
+
+	/* Returns the ids of the records with a last name, a first name, or a word of one of them,
+	 * within the edit distance of the keyword
+	 * @param foldedKeyword case folded keyword
+	 * @param maxEdits largest number of inserted, deleted or replaced characters
+	 * @return sorted ids of the matching records
+	 */
+	public int [] lookup (String foldedKeyword, int maxEdits) {
+		int [] found = new int [16];
+		int count = 0;
+		if (terms.length > 0) {
+			ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+			pending.push(0);
+			while (!pending.isEmpty()) {
+				int t = pending.pop();
+				int d = distance(foldedKeyword, terms[t]);
+				if (d <= maxEdits) {
+					int length = starts[t + 1] - starts[t];
+					if (count + length > found.length)
+						found = Arrays.copyOf(found, Math.max(found.length * 2, count + length));
+					System.arraycopy(ids, starts[t], found, count, length);
+					count += length;
+				}
+				for (int child = firstChild[t]; child >= 0; child = nextSibling[child]) {
+					if (edge[child] >= d - maxEdits && edge[child] <= d + maxEdits)
+						pending.push(child);
+				}
+			}
+		}
+
+		//a record can contain several matching terms
+		Arrays.sort(found, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || found[distinct - 1] != found[i])
+				found[distinct++] = found[i];
+		}
+		return Arrays.copyOf(found, distinct);
+	}
+
+	/* Determines if any of the terms of the name is within the edit distance of the keyword,
+	 * the terms are the same as the ones the index is built from
+	 * @param name the name
+	 * @param foldedKeyword case folded keyword
+	 * @param maxEdits largest number of edits
+	 * @return true if the name matches the keyword
+	 */
+	public static boolean matches (Name name, String foldedKeyword, int maxEdits) {
+		return matchesTerms(name.getLastNameKey(), foldedKeyword, maxEdits)
+				|| matchesTerms(name.getFirstNameKey(), foldedKeyword, maxEdits);
+	}
+
+	/* Returns the edit (Levenshtein) distance between two strings
+	 * @return the smallest number of inserted, deleted or replaced characters that changes one string into the other
+	 */
+	public static int distance (String a, String b) {
+		int [] previous = new int [b.length() + 1];
+		int [] current = new int [b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			char c = a.charAt(i - 1);
+			for (int j = 1; j <= b.length(); j++) {
+				int replace = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			int [] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	/* Returns the number of distinct terms in the index
+	 * @return the number of terms
+	 */
+	public int size () {
+		return terms.length;
+	}
+
+
+	/*
+	 * Helper method that adds term t below the root of the BK-tree.
+	 */
+	private void insert (int t) {
+		int node = 0;
+		while (true) {
+			int d = distance(terms[t], terms[node]);
+			int child = firstChild[node];
+			while (child >= 0 && edge[child] != d)
+				child = nextSibling[child];
+			if (child < 0) {
+				edge[t] = d;
+				nextSibling[t] = firstChild[node];
+				firstChild[node] = t;
+				return;
+			}
+			node = child;
+		}
+	}
+
+	/*
+	 * Helper method that adds the id to the postings of the value and of its words.
+	 * Each posting list is an int array whose first element is the number of ids.
+	 */
+	private static void addTerms (Map<String, int []> postings, String folded, int id) {
+		if (folded.isEmpty())
+			return;
+		addTerm(postings, folded, id);
+		if (folded.indexOf(' ') >= 0) {
+			for (String word : folded.split(" ")) {
+				if (!word.isEmpty())
+					addTerm(postings, word, id);
+			}
+		}
+	}
+
+	private static void addTerm (Map<String, int []> postings, String term, int id) {
+		int [] list = postings.get(term);
+		if (list == null) {
+			list = new int [4];
+		}
+		else if (list[list[0]] == id) {
+			return;
+		}
+		else if (list[0] + 1 == list.length) {
+			list = Arrays.copyOf(list, list.length * 2);
+		}
+		list[++list[0]] = id;
+		postings.put(term, list);
+	}
+
+	/*
+	 * Helper method that checks the value and its words.
+	 */
+	private static boolean matchesTerms (String folded, String foldedKeyword, int maxEdits) {
+		if (folded.isEmpty())
+			return false;
+		if (distance(folded, foldedKeyword) <= maxEdits)
+			return true;
+		if (folded.indexOf(' ') >= 0) {
+			for (String word : folded.split(" ")) {
+				if (!word.isEmpty() && distance(word, foldedKeyword) <= maxEdits)
+					return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,265 @@
+package project3;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+
+/* This class is a grid index of the coordinates (latitude and longitude) of a list of records.
+ * The surface of the Earth is divided into cells of CELL degrees of latitude by CELL degrees of longitude.
+ * For each cell the index stores the ids (positions in the list) of the records located in it, together
+ * with their coordinates, in primitive arrays ordered by cell.
+ * A radius query only computes the distance to the records in the cells that overlap the bounding box
+ * of the circle, instead of the distance to every record.
+ * Records without coordinates are not indexed.
+ * The index is immutable once built and does not change when the list of records changes.
+ */
+
+public class GeoIndex {
+
+	//mean radius of the Earth in kilometers
+	public static final double EARTH_RADIUS_KM = 6371.0088;
+
+	//size of the grid cells in degrees
+	private static final double CELL = 0.5;
+	private static final int LAT_CELLS = (int) (180 / CELL);
+	private static final int LON_CELLS = (int) (360 / CELL);
+
+	//the records in cell c are ids[starts[c]] to ids[starts[c+1]-1], and their coordinates are at the same positions
+	private final int [] starts;
+	private final int [] ids;
+	private final double [] latitudes;
+	private final double [] longitudes;
+
+	private GeoIndex (int [] starts, int [] ids, double [] latitudes, double [] longitudes) {
+		this.starts = starts;
+		this.ids = ids;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+	}
+
+	/* Builds the index for the list of records, the position of each record in the list is its id
+	 * @param records list of records to be indexed
+	 * @return index of the coordinates of the records
+	 */
+	public static GeoIndex build (List<Record> records) {
+		int [] cells = new int [records.size()];
+		int [] starts = new int [LAT_CELLS * LON_CELLS + 1];
+
+		//find the cell of each record and count the records in each cell
+		for (int id = 0; id < records.size(); id++) {
+			Location location = records.get(id).getLocation();
+			cells[id] = (location == null) ? -1 : cellOf(location.getLatitude(), location.getLongitude());
+			if (cells[id] >= 0)
+				starts[cells[id] + 1]++;
+		}
+		for (int c = 0; c < LAT_CELLS * LON_CELLS; c++)
+			starts[c + 1] += starts[c];
+
+		//place the ids and the coordinates into the slots of their cells
+		int count = starts[LAT_CELLS * LON_CELLS];
+		int [] ids = new int [count];
+		double [] latitudes = new double [count];
+		double [] longitudes = new double [count];
+		int [] next = Arrays.copyOf(starts, LAT_CELLS * LON_CELLS);
+		for (int id = 0; id < cells.length; id++) {
+			if (cells[id] < 0)
+				continue;
+			int pos = next[cells[id]]++;
+			Location location = records.get(id).getLocation();
+			ids[pos] = id;
+			latitudes[pos] = location.getLatitude();
+			longitudes[pos] = location.getLongitude();
+		}
+		return new GeoIndex(starts, ids, latitudes, longitudes);
+	}
+
+	/* Merges the indexes of two lists of records into the index of the list that contains the records of both
+	 * @param a index of the first list
+	 * @param aIds id in the merged list of each record of the first list
+	 * @param b index of the second list
+	 * @param bIds id in the merged list of each record of the second list
+	 * @return index of the merged list
+	 */
+	static GeoIndex merge (GeoIndex a, int [] aIds, GeoIndex b, int [] bIds) {
+		int [] starts = new int [LAT_CELLS * LON_CELLS + 1];
+		int count = a.ids.length + b.ids.length;
+		int [] ids = new int [count];
+		double [] latitudes = new double [count];
+		double [] longitudes = new double [count];
+		int pos = 0;
+		for (int c = 0; c < LAT_CELLS * LON_CELLS; c++) {
+			//the ids of each cell are increasing
+			int i = a.starts[c];
+			int j = b.starts[c];
+			while (i < a.starts[c + 1] || j < b.starts[c + 1]) {
+				boolean first = j == b.starts[c + 1] || (i < a.starts[c + 1] && aIds[a.ids[i]] < bIds[b.ids[j]]);
+				GeoIndex from = first ? a : b;
+				int k = first ? i++ : j++;
+				ids[pos] = first ? aIds[a.ids[k]] : bIds[b.ids[k]];
+				latitudes[pos] = from.latitudes[k];
+				longitudes[pos] = from.longitudes[k];
+				pos++;
+			}
+			starts[c + 1] = pos;
+		}
+		return new GeoIndex(starts, ids, latitudes, longitudes);
+	}
+
+	/* Returns the ids of the records located within the radius of the point, ordered by their distance
+	 * from the point (records at the same distance are ordered by id).
+	 * @param latitude latitude of the point in degrees
+	 * @param longitude longitude of the point in degrees
+	 * @param radiusKm radius in kilometers
+	 * @return ids of the records within the radius, closest first
+	 */
+	public int [] near (double latitude, double longitude, double radiusKm) {
+		//bounding box of the circle, in cells
+		double dLat = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+		int fromLat = Math.max(0, latCell(latitude - dLat));
+		int toLat = Math.min(LAT_CELLS - 1, latCell(latitude + dLat));
+		double cos = Math.min(Math.cos(Math.toRadians(Math.max(-90, latitude - dLat))),
+				Math.cos(Math.toRadians(Math.min(90, latitude + dLat))));
+		double dLon = (latitude - dLat <= -90 || latitude + dLat >= 90 || cos <= 0) ? 180 : Math.toDegrees(radiusKm / (EARTH_RADIUS_KM * cos));
+		int fromLon = 0;
+		int lonCells = LON_CELLS;
+		if (dLon < 180) {
+			fromLon = (int) Math.floor((longitude + 180 - dLon) / CELL);
+			lonCells = Math.min(LON_CELLS, (int) Math.floor((longitude + 180 + dLon) / CELL) - fromLon + 1);
+		}
+
+		//compute the distance to the records in the cells of the box and keep the ones within the radius
+		long [] found = new long [16];
+		double [] distances = new double [16];
+		int count = 0;
+		for (int lat = fromLat; lat <= toLat; lat++) {
+			for (int i = 0; i < lonCells; i++) {
+				int cell = lat * LON_CELLS + Math.floorMod(fromLon + i, LON_CELLS);
+				for (int pos = starts[cell]; pos < starts[cell + 1]; pos++) {
+					double d = distanceKm(latitude, longitude, latitudes[pos], longitudes[pos]);
+					if (d > radiusKm)
+						continue;
+					if (count == found.length) {
+						found = Arrays.copyOf(found, count * 2);
+						distances = Arrays.copyOf(distances, count * 2);
+					}
+					distances[count] = d;
+					found[count++] = pos;
+				}
+			}
+		}
+		return byDistance(found, distances, count, ids);
+	}
+
+	/* Returns the ids of the records located within the radius of the point, ordered by their distance
+	 * from the point, by computing the distance to every record of the list
+	 * @param records list of records
+	 * @param latitude latitude of the point in degrees
+	 * @param longitude longitude of the point in degrees
+	 * @param radiusKm radius in kilometers
+	 * @return positions of the records within the radius, closest first
+	 */
+	public static int [] scan (List<Record> records, double latitude, double longitude, double radiusKm) {
+		long [] found = new long [16];
+		double [] distances = new double [16];
+		int count = 0;
+		for (int id = 0; id < records.size(); id++) {
+			Location location = records.get(id).getLocation();
+			if (location == null || !location.hasCoordinates())
+				continue;
+			double d = distanceKm(latitude, longitude, location.getLatitude(), location.getLongitude());
+			if (d > radiusKm)
+				continue;
+			if (count == found.length) {
+				found = Arrays.copyOf(found, count * 2);
+				distances = Arrays.copyOf(distances, count * 2);
+			}
+			distances[count] = d;
+			found[count++] = id;
+		}
+		return byDistance(found, distances, count, null);
+	}
+
+	/* Returns the great circle distance between two points, computed with the haversine formula
+	 * @return the distance in kilometers
+	 */
+	public static double distanceKm (double lat1, double lon1, double lat2, double lon2) {
+		double sinLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+		double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+		double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	/* Writes the index
+	 * @param out stream to write to
+	 * @throws IOException when the index cannot be written
+	 */
+	void write (DataOutputStream out) throws IOException {
+		Snapshot.writeInts(out, starts);
+		Snapshot.writeInts(out, ids);
+		Snapshot.writeDoubles(out, latitudes);
+		Snapshot.writeDoubles(out, longitudes);
+	}
+
+	/* Reads an index written by write()
+	 * @param in buffer to read from
+	 * @param rows number of records of the list the index was built for
+	 * @return index with the same content
+	 * @throws IllegalArgumentException when the buffer does not contain a valid index for the number of records
+	 */
+	static GeoIndex read (ByteBuffer in, int rows) throws IllegalArgumentException {
+		int [] starts = Snapshot.readInts(in);
+		int [] ids = Snapshot.readInts(in);
+		double [] latitudes = Snapshot.readDoubles(in);
+		double [] longitudes = Snapshot.readDoubles(in);
+		if (latitudes.length != ids.length || longitudes.length != ids.length)
+			throw new IllegalArgumentException("the coordinates do not have the same length as the ids");
+		Snapshot.checkOffsets(starts, LAT_CELLS * LON_CELLS, ids.length);
+		Snapshot.checkIds(ids, starts, rows);
+		return new GeoIndex(starts, ids, latitudes, longitudes);
+	}
+
+	/* Returns the number of records in the index
+	 * @return the number of records with coordinates
+	 */
+	public int size () {
+		return ids.length;
+	}
+
+
+	/*
+	 * Helper method that orders the found positions by distance, then by id, and converts them to ids
+	 * (the positions are ids when ids is null).
+	 */
+	private static int [] byDistance (long [] found, double [] distances, int count, int [] ids) {
+		//non negative doubles have the same order as their bits, so the distance and the id are packed in
+		//a single long and sorted: the bits of the float distance in the high half and the id in the low half
+		long [] keys = new long [count];
+		for (int i = 0; i < count; i++) {
+			int id = (ids == null) ? (int) found[i] : ids[(int) found[i]];
+			keys[i] = ((long) Float.floatToIntBits((float) distances[i]) << 32) | id;
+		}
+		Arrays.sort(keys);
+		int [] result = new int [count];
+		for (int i = 0; i < count; i++)
+			result[i] = (int) keys[i];
+		return result;
+	}
+
+	/*
+	 * Helper method that returns the cell of the coordinates, or -1 if they are not valid.
+	 */
+	private static int cellOf (double latitude, double longitude) {
+		if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180))
+			return -1;
+		int lat = Math.min(LAT_CELLS - 1, latCell(latitude));
+		int lon = Math.min(LON_CELLS - 1, (int) Math.floor((longitude + 180) / CELL));
+		return lat * LON_CELLS + lon;
+	}
+
+	private static int latCell (double latitude) {
+		return (int) Math.floor((latitude + 90) / CELL);
+	}
+}
@@ -0,0 +1,213 @@
+package project3;
+
+import java.util.Arrays;
+
+
+/* This class is an immutable compressed set of record ids (non negative ints).
+ * The ids are split into blocks of 65536 by their upper 16 bits. A block with few ids stores their
+ * lower 16 bits in a sorted char array, a block with more than 4096 ids (where the array would take
+ * more than 8KB) stores them in a bitset of 65536 bits. Only the blocks that contain ids are stored.
+ * Intersections work block by block: two arrays are merged, an array is filtered by a bitset, and two
+ * bitsets are combined one word at a time.
+ */
+
+public final class IdBitmap {
+
+	private static final int ARRAY_MAX = 4096;
+	private static final int WORDS = 65536 / 64;
+
+	public static final IdBitmap EMPTY = new IdBitmap(new int [0], new Object [0], new int [0]);
+
+	//upper 16 bits of the ids in each block, increasing, and the block contents: char [] or long []
+	private final int [] keys;
+	private final Object [] blocks;
+	private final int [] sizes;
+	private final int cardinality;
+
+	private IdBitmap (int [] keys, Object [] blocks, int [] sizes) {
+		this.keys = keys;
+		this.blocks = blocks;
+		this.sizes = sizes;
+		int total = 0;
+		for (int size : sizes)
+			total += size;
+		this.cardinality = total;
+	}
+
+	/* Creates the set of the ids
+	 * @param ids increasing non negative ids
+	 * @return set of the ids
+	 */
+	public static IdBitmap of (int [] ids) {
+		int blockCount = 0;
+		for (int i = 0; i < ids.length; i++)
+			if (i == 0 || (ids[i] >>> 16) != (ids[i - 1] >>> 16))
+				blockCount++;
+
+		int [] keys = new int [blockCount];
+		Object [] blocks = new Object [blockCount];
+		int [] sizes = new int [blockCount];
+		int b = 0;
+		for (int from = 0; from < ids.length; b++) {
+			int key = ids[from] >>> 16;
+			int to = from;
+			while (to < ids.length && (ids[to] >>> 16) == key)
+				to++;
+			keys[b] = key;
+			sizes[b] = to - from;
+			if (to - from <= ARRAY_MAX) {
+				char [] values = new char [to - from];
+				for (int i = from; i < to; i++)
+					values[i - from] = (char) ids[i];
+				blocks[b] = values;
+			}
+			else {
+				long [] words = new long [WORDS];
+				for (int i = from; i < to; i++)
+					words[(ids[i] & 0xFFFF) >>> 6] |= 1L << ids[i];
+				blocks[b] = words;
+			}
+			from = to;
+		}
+		return new IdBitmap(keys, blocks, sizes);
+	}
+
+	/* Returns the number of ids in the set
+	 * @return the number of ids
+	 */
+	public int cardinality () {
+		return cardinality;
+	}
+
+	/* Returns the ids that are in both sets
+	 * @param other the other set
+	 * @return the intersection of the sets
+	 */
+	public IdBitmap and (IdBitmap other) {
+		int n = Math.min(keys.length, other.keys.length);
+		int [] resultKeys = new int [n];
+		Object [] resultBlocks = new Object [n];
+		int [] resultSizes = new int [n];
+		int count = 0;
+		for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if (keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				Object block = and(blocks[i], other.blocks[j]);
+				int size = size(block);
+				if (size > 0) {
+					resultKeys[count] = keys[i];
+					resultBlocks[count] = block;
+					resultSizes[count++] = size;
+				}
+				i++;
+				j++;
+			}
+		}
+		return new IdBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultBlocks, count), Arrays.copyOf(resultSizes, count));
+	}
+
+	/* Determines if the id is in the set
+	 * @param id the id
+	 * @return true if the set contains the id
+	 */
+	public boolean contains (int id) {
+		int b = Arrays.binarySearch(keys, id >>> 16);
+		if (b < 0)
+			return false;
+		if (blocks[b] instanceof char [])
+			return Arrays.binarySearch((char []) blocks[b], (char) id) >= 0;
+		return (((long []) blocks[b])[(id & 0xFFFF) >>> 6] & (1L << id)) != 0;
+	}
+
+	/* Returns the ids of the set
+	 * @return increasing ids
+	 */
+	public int [] toArray () {
+		int [] ids = new int [cardinality];
+		int pos = 0;
+		for (int b = 0; b < keys.length; b++) {
+			int high = keys[b] << 16;
+			if (blocks[b] instanceof char []) {
+				for (char low : (char []) blocks[b])
+					ids[pos++] = high | low;
+			}
+			else {
+				long [] words = (long []) blocks[b];
+				for (int w = 0; w < WORDS; w++) {
+					for (long word = words[w]; word != 0; word &= word - 1)
+						ids[pos++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+				}
+			}
+		}
+		return ids;
+	}
+
+
+	/*
+	 * Helper method that intersects two blocks.
+	 */
+	private static Object and (Object a, Object b) {
+		if (a instanceof char [] && b instanceof char [])
+			return and((char []) a, (char []) b);
+		if (a instanceof char [])
+			return and((char []) a, (long []) b);
+		if (b instanceof char [])
+			return and((char []) b, (long []) a);
+
+		long [] x = (long []) a;
+		long [] y = (long []) b;
+		long [] words = new long [WORDS];
+		int size = 0;
+		for (int w = 0; w < WORDS; w++) {
+			words[w] = x[w] & y[w];
+			size += Long.bitCount(words[w]);
+		}
+		if (size > ARRAY_MAX)
+			return words;
+		char [] values = new char [size];
+		int pos = 0;
+		for (int w = 0; w < WORDS; w++) {
+			for (long word = words[w]; word != 0; word &= word - 1)
+				values[pos++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+		}
+		return values;
+	}
+
+	private static char [] and (char [] a, char [] b) {
+		char [] values = new char [Math.min(a.length, b.length)];
+		int size = 0;
+		for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+			if (a[i] < b[j]) i++;
+			else if (a[i] > b[j]) j++;
+			else {
+				values[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(values, size);
+	}
+
+	private static char [] and (char [] a, long [] words) {
+		char [] values = new char [a.length];
+		int size = 0;
+		for (char v : a)
+			if ((words[v >>> 6] & (1L << v)) != 0)
+				values[size++] = v;
+		return Arrays.copyOf(values, size);
+	}
+
+	private static int size (Object block) {
+		if (block instanceof char [])
+			return ((char []) block).length;
+		int size = 0;
+		for (long word : (long []) block)
+			size += Long.bitCount(word);
+		return size;
+	}
+}
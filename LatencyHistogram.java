@@ -0,0 +1,125 @@
+package project3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/* This class is a histogram of latencies (or any other non negative long values) that can be
+ * updated concurrently without locking.
+ * Values below 32 have their own buckets. Larger values are grouped into 16 buckets per power of two,
+ * so a percentile is reported with a relative error of at most 1/16 (the upper bound of its bucket
+ * is reported). The maximum is tracked exactly.
+ */
+
+public class LatencyHistogram {
+
+	private static final int LINEAR = 32;
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BITS = 4;
+	private static final int BUCKETS = LINEAR + (63 - 5) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/* Records a value
+	 * @param value the value, negative values are recorded as 0
+	 */
+	public void record (long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(bucket(value));
+		total.incrementAndGet();
+		sum.addAndGet(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/* Returns the number of recorded values
+	 * @return the number of values
+	 */
+	public long count () {
+		return total.get();
+	}
+
+	/* Returns the largest recorded value
+	 * @return the maximum, 0 if no values were recorded
+	 */
+	public long max () {
+		return max.get();
+	}
+
+	/* Returns the mean of the recorded values
+	 * @return the mean, 0 if no values were recorded
+	 */
+	public double mean () {
+		long n = total.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/* Returns the value below which the specified fraction of the recorded values fall
+	 * @param fraction fraction of the values, for example 0.99 for the 99th percentile
+	 * @return upper bound of the bucket of the percentile (at most the maximum), 0 if no values were recorded
+	 * @throws IllegalArgumentException if the fraction is not in [0, 1]
+	 */
+	public long percentile (double fraction) {
+		if (!(fraction >= 0 && fraction <= 1))
+			throw new IllegalArgumentException("the fraction has to be between 0 and 1");
+		long [] snapshot = new long [BUCKETS];
+		long n = 0;
+		for (int b = 0; b < BUCKETS; b++)
+			n += snapshot[b] = counts.get(b);
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * n));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += snapshot[b];
+			if (seen >= rank)
+				return Math.min(upperBound(b), max.get());
+		}
+		return max.get();
+	}
+
+	/* Removes all the recorded values
+	 */
+	public void reset () {
+		for (int b = 0; b < BUCKETS; b++)
+			counts.set(b, 0);
+		total.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/* Returns a summary of the recorded latencies, the values are assumed to be nanoseconds
+	 * @return string with the count, the mean, the 50th and the 99th percentiles and the maximum in milliseconds
+	 */
+	@Override
+	public String toString () {
+		return String.format("n=%d mean=%.3f ms p50=%.3f ms p99=%.3f ms max=%.3f ms",
+				count(), mean() / 1e6, percentile(0.5) / 1e6, percentile(0.99) / 1e6, max() / 1e6);
+	}
+
+
+	/*
+	 * Helper method that returns the bucket of the value.
+	 */
+	private static int bucket (long value) {
+		if (value < LINEAR)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exponent - 5) * SUB_BUCKETS + mantissa;
+	}
+
+	/*
+	 * Helper method that returns the largest value of the bucket.
+	 */
+	private static long upperBound (int bucket) {
+		if (bucket < LINEAR)
+			return bucket;
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + 5;
+		long mantissa = (bucket - LINEAR) % SUB_BUCKETS;
+		long lower = (SUB_BUCKETS + mantissa) << (exponent - SUB_BITS);
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
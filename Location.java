@@ -17,6 +17,20 @@ public class Location implements Comparable<Location> {
 	private String country;
 	private String zip;
 	
+	//case folded components, used for matching and comparisons, computed when they are first needed 
+	//(or taken from the pool when the location is constructed with one) 
+	private String cityKey;
+	private String stateKey;
+	private String countryKey;
+	private String zipKey;
+	
+	//cached hash code, 0 until it is first computed 
+	private int hash;
+	
+	//coordinates in degrees, NaN if they are not known 
+	private double latitude = Double.NaN;
+	private double longitude = Double.NaN;
+	
 	/* Constructs a new Location object with specified city, state, country, and zip code
 	 * @param city city
      * @param state state
@@ -26,12 +40,38 @@ public class Location implements Comparable<Location> {
      * @throws IllegalArgumentException if the constructor is called with zip value that is not valid. 
      */
 	public Location (String city, String state, String country, String zip) throws IllegalArgumentException{
-		this.city = city;
-		this.state = state;
-		this.country = country;
-		this.zip = zip;
+		this(city, state, country, zip, null);
+	}
+	
+	/* Constructs a new Location object that uses the canonical instances of its values (and of their case folded copies) from the pool
+	 * Without a pool the case folded copies are only computed when the location is compared or matched
+	 * @param pool pool of canonical values, or null to store the values as they are
+	 */
+	Location (String city, String state, String country, String zip, StringPool pool) throws IllegalArgumentException{
+		this.city = StringPool.intern(pool, city);
+		this.state = StringPool.intern(pool, state);
+		this.country = StringPool.intern(pool, country);
+		this.zip = StringPool.intern(pool, zip);
+		if (pool != null) {
+			this.cityKey = StringPool.intern(pool, CaseFold.fold(city));
+			this.stateKey = StringPool.intern(pool, CaseFold.fold(state));
+			this.countryKey = StringPool.intern(pool, CaseFold.fold(country));
+			this.zipKey = StringPool.intern(pool, CaseFold.fold(zip));
+		}
+	}
+	
+	/* Constructs a new Location object with coordinates that uses the canonical instances of its values from the pool
+	 * @param latitude latitude in degrees, NaN if it is not known
+	 * @param longitude longitude in degrees, NaN if it is not known
+	 * @param pool pool of canonical values, or null to store the values as they are
+	 */
+	Location (String city, String state, String country, String zip, double latitude, double longitude, StringPool pool) throws IllegalArgumentException{
+		this(city, state, country, zip, pool);
+		this.latitude = latitude;
+		this.longitude = longitude;
 	}
 
+
 	/* Returns the city of the location
 	 * @return the city of the location
 	 */
@@ -53,6 +93,34 @@ public class Location implements Comparable<Location> {
 		return country;
 	}
 	
+	/* Returns the zip code of the location as it was specified
+	 * @return the zip code of the location
+	 */
+	public String getZip() {
+		return zip;
+	}
+	
+	/* Returns the latitude of the location
+	 * @return the latitude in degrees, or NaN if it is not known
+	 */
+	public double getLatitude() {
+		return latitude;
+	}
+	
+	/* Returns the longitude of the location
+	 * @return the longitude in degrees, or NaN if it is not known
+	 */
+	public double getLongitude() {
+		return longitude;
+	}
+	
+	/* Determines whether the coordinates of the location are known
+	 * @return true if both the latitude and the longitude are known
+	 */
+	public boolean hasCoordinates() {
+		return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+	}
+	
 	/* This class should override the equals methods. 
 	 * The two Location objects are equal if all of their components (city, state, country, zip code) are the same. 
 	 * This comparison should be case insensitive.
@@ -71,21 +139,26 @@ public class Location implements Comparable<Location> {
 		
 		Location other = (Location) obj;
 		
-		if (this.zip != null && other.zip != null) {
-			int compareZip = this.zip.compareToIgnoreCase(other.zip);
-			if (compareZip == 0) {
-				int compareCity = this.city.compareToIgnoreCase(other.city);
-				if (compareCity == 0) {
-					int compareState = this.state.compareToIgnoreCase(other.state);
-					if (compareState == 0) {
-						int compareCountry = this.country.compareToIgnoreCase(other.country);
-						if (compareCountry == 0)
-							return true;
-					}
-				}
-			}
+		return this.zip != null && other.zip != null 
+				&& getZipKey().equals(other.getZipKey()) 
+				&& getCityKey().equals(other.getCityKey()) 
+				&& getStateKey().equals(other.getStateKey()) 
+				&& getCountryKey().equals(other.getCountryKey());
+	}
+
+	/* Returns a hash code that is consistent with equals() and with compareTo(): it is computed from the 
+	 * case folded zip code, city, state and country, and cached after the first call 
+	 * @override hashCode method of Object class
+	 * @return the hash code of the location
+	 */
+	@Override
+	public int hashCode () {
+		int h = hash;
+		if (h == 0) {
+			h = 31 * (31 * (31 * getZipKey().hashCode() + getCityKey().hashCode()) + getStateKey().hashCode()) + getCountryKey().hashCode();
+			hash = h;
 		}
-		return false;
+		return h;
 	}
 
 	/* Compares this Location object with another
@@ -96,15 +169,16 @@ public class Location implements Comparable<Location> {
 	 */
 	@Override
 	public int compareTo(Location o) {
-		if(this.zip.compareToIgnoreCase(o.zip) != 0)
-			return this.zip.compareToIgnoreCase(o.zip);
-		else if (this.city.compareToIgnoreCase(o.city) != 0)
-			return this.city.compareToIgnoreCase(o.city);
-		else if (this.state.compareToIgnoreCase(o.state) != 0)
-			return this.state.compareToIgnoreCase(o.state);
-		else if (this.country.compareToIgnoreCase(o.country) != 0)
-			return this.country.compareToIgnoreCase(o.country);
-		return 0;
+		int compare = getZipKey().compareTo(o.getZipKey());
+		if (compare != 0)
+			return compare;
+		compare = getCityKey().compareTo(o.getCityKey());
+		if (compare != 0)
+			return compare;
+		compare = getStateKey().compareTo(o.getStateKey());
+		if (compare != 0)
+			return compare;
+		return getCountryKey().compareTo(o.getCountryKey());
 	}
 	
 	/* Returns the location in string format
@@ -119,11 +193,59 @@ public class Location implements Comparable<Location> {
 	 * @return true if the keyword is in the city, false if it is not
 	 */
 	public boolean contains(String keyword) {
-		if(this.city.toLowerCase().contains(keyword.toLowerCase()))
-			return true;
-		if(this.zip.contains(keyword))
-			return true;
-		return false;
+		return containsFolded(CaseFold.fold(keyword));
+	}
+	
+	/* Determines whether the city or the zip code of the Location object contains specified keyword without allocating any objects
+	 * @param foldedKeyword location or location substring that we are looking for, already case folded
+	 * @return true if the keyword is in the city or the zip code, false if it is not
+	 */
+	boolean containsFolded(String foldedKeyword) {
+		return getCityKey().contains(foldedKeyword) || getZipKey().contains(foldedKeyword);
+	}
+	
+	/* Returns the case folded city
+	 */
+	String getCityKey() {
+		String key = cityKey;
+		if (key == null) {
+			key = CaseFold.fold(city);
+			cityKey = key;
+		}
+		return key;
+	}
+	
+	/* Returns the case folded state
+	 */
+	private String getStateKey() {
+		String key = stateKey;
+		if (key == null) {
+			key = CaseFold.fold(state);
+			stateKey = key;
+		}
+		return key;
+	}
+	
+	/* Returns the case folded country
+	 */
+	private String getCountryKey() {
+		String key = countryKey;
+		if (key == null) {
+			key = CaseFold.fold(country);
+			countryKey = key;
+		}
+		return key;
+	}
+	
+	/* Returns the case folded zip code
+	 */
+	private String getZipKey() {
+		String key = zipKey;
+		if (key == null) {
+			key = CaseFold.fold(zip);
+			zipKey = key;
+		}
+		return key;
 	}
 	
 	/* Determines whether the zip code of the Location object contains specified keyword
@@ -131,15 +253,23 @@ public class Location implements Comparable<Location> {
 	 * @return true if the keyword is in the zip code, false if it is not
 	 */
 	public String changeZip() {
-		if(this.zip.length() == 3) {
-			String newZip = "00".concat(this.zip);
+		return changeZip(this.zip);
+	}
+	
+	/* Returns the zip code with its left out leading zeros, for example 01301 for 1301
+	 * @param zip zip code
+	 * @return the zip code with five digits, or zip itself if it does not have three or four characters
+	 */
+	static String changeZip(String zip) {
+		if(zip.length() == 3) {
+			String newZip = "00".concat(zip);
 			return newZip;
 		}
-		else if(this.zip.length() == 4) {
-			String newZip = "0".concat(this.zip);
+		else if(zip.length() == 4) {
+			String newZip = "0".concat(zip);
 			return newZip;
 		}
-		return this.zip;
+		return zip;
 	}
 
 	
@@ -0,0 +1,320 @@
+package project3;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms that describe the loading of the data set and the executed queries.
+ *
+ * <p>The ingest metrics are the number of data rows read, the number of rows skipped for each reason
+ * (see {@link RecordLoader#toRecord(java.util.ArrayList, StringPool)}), the number of duplicate rows that were
+ * collapsed (see {@link RecordList#removeDuplicates()}), the values replaced with their canonical instances by the
+ * {@link StringPool} of each load and the heap they saved, the parsing speed of the last load and the duration of
+ * each phase: parsing the CSV file, removing the duplicates, sorting the records, building the indexes,
+ * reading and writing the snapshot, and merging appended rows.
+ *
+ * <p>The query metrics are, for each command, a {@link LatencyHistogram} of the latencies and one of
+ * the numbers of results. Together with the heap usage they are displayed by the {@code stats} command
+ * ({@link #report()}) and exposed over JMX ({@link #register()}).
+ *
+ * <p>All the methods can be called concurrently. The loaders and the query engine record into the
+ * single instance returned by {@link #global()}.
+ *
+ */
+
+public class Metrics implements MetricsMXBean {
+
+	/** Name under which the metrics are registered with the platform MBean server. */
+	public static final String OBJECT_NAME = "project3:type=Metrics";
+
+	//reasons for skipping a row
+	public static final String SHORT_ROW = "short row";
+	public static final String INVALID_NAME = "invalid name";
+	public static final String INVALID_LOCATION = "invalid location";
+	public static final String INVALID_RECORD = "invalid record";
+
+	//ingest phases
+	public static final String PARSE = "parse";
+	public static final String DEDUP = "dedup";
+	public static final String SORT = "sort";
+	public static final String INDEX = "index";
+	public static final String SNAPSHOT_READ = "snapshot read";
+	public static final String SNAPSHOT_WRITE = "snapshot write";
+	public static final String APPEND = "append";
+
+	private static final String [] REASONS = {SHORT_ROW, INVALID_NAME, INVALID_LOCATION, INVALID_RECORD};
+	private static final String [] PHASES = {PARSE, DEDUP, SORT, INDEX, SNAPSHOT_READ, SNAPSHOT_WRITE, APPEND};
+
+	private static final Metrics GLOBAL = new Metrics();
+
+	private final LongAdder rowsRead = new LongAdder();
+	private final LongAdder [] skipped = new LongAdder [REASONS.length];
+	private final LongAdder collapsed = new LongAdder();
+	private final LongAdder internHits = new LongAdder();
+	private final LongAdder internMisses = new LongAdder();
+	private final LongAdder internBytesSaved = new LongAdder();
+	private final Map<String, Long> lastPhase = new ConcurrentHashMap<String, Long>();
+	private volatile double rowsPerSecond;
+
+	//latencies in nanoseconds and numbers of results, by command
+	private final Map<String, LatencyHistogram> latencies = new ConcurrentSkipListMap<String, LatencyHistogram>();
+	private final Map<String, LatencyHistogram> resultSizes = new ConcurrentSkipListMap<String, LatencyHistogram>();
+
+	/**
+	 * Constructs metrics with all the counters at 0.
+	 */
+	public Metrics () {
+		for (int i = 0; i < skipped.length; i++)
+			skipped[i] = new LongAdder();
+	}
+
+	/**
+	 * Returns the metrics of the program.
+	 * @return the shared instance
+	 */
+	public static Metrics global () {
+		return GLOBAL;
+	}
+
+	/**
+	 * Records a row that was skipped.
+	 * @param reason one of {@link #SHORT_ROW}, {@link #INVALID_NAME}, {@link #INVALID_LOCATION} or {@link #INVALID_RECORD}
+	 * @throws IllegalArgumentException if the reason is not known
+	 */
+	public void skipped ( String reason ) {
+		skipped[indexOf(REASONS, reason)].increment();
+	}
+
+	/**
+	 * Records duplicate rows that were removed.
+	 * @param rows number of removed rows
+	 */
+	public void collapsed ( long rows ) {
+		collapsed.add(rows);
+	}
+
+	/**
+	 * Records the statistics of the pool through which the columns of a data set share their repeated values
+	 * (see {@link RecordColumns#build(java.util.List)}), once the columns are built or read.
+	 * The pools that only live during the parsing are not recorded: their records do not outlive the load.
+	 * @param pool the pool, which is not used after the columns are built
+	 */
+	public void interned ( StringPool pool ) {
+		internHits.add(pool.getHits());
+		internMisses.add(pool.getMisses());
+		internBytesSaved.add(pool.getBytesSaved());
+	}
+
+	/**
+	 * Records the parsing of the data rows of the CSV file.
+	 * @param rows number of rows that were read, including the skipped ones
+	 * @param nanos duration of the parsing in nanoseconds
+	 */
+	public void parsed ( long rows, long nanos ) {
+		rowsRead.add(rows);
+		phase(PARSE, nanos);
+		if (nanos > 0)
+			rowsPerSecond = rows * 1e9 / nanos;
+	}
+
+	/**
+	 * Records the duration of an ingest phase.
+	 * @param phase one of {@link #PARSE}, {@link #DEDUP}, {@link #SORT}, {@link #INDEX}, {@link #SNAPSHOT_READ}, {@link #SNAPSHOT_WRITE} or {@link #APPEND}
+	 * @param nanos duration in nanoseconds
+	 * @throws IllegalArgumentException if the phase is not known
+	 */
+	public void phase ( String phase, long nanos ) {
+		indexOf(PHASES, phase);
+		lastPhase.put(phase, nanos);
+	}
+
+	/**
+	 * Records an executed query.
+	 * @param command the command of the query
+	 * @param nanos latency in nanoseconds
+	 * @param results number of displayed results
+	 */
+	public void query ( String command, long nanos, long results ) {
+		latencies.computeIfAbsent(command, c -> new LatencyHistogram()).record(nanos);
+		resultSizes.computeIfAbsent(command, c -> new LatencyHistogram()).record(results);
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, unless metrics are already registered under {@link #OBJECT_NAME}.
+	 * @return true if these metrics are registered after the call
+	 */
+	public boolean register () {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			synchronized (Metrics.class) {
+				if (!server.isRegistered(name))
+					server.registerMBean(this, name);
+			}
+			return true;
+		}
+		catch (JMException | SecurityException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a report of all the metrics, one per line.
+	 * @return the report
+	 */
+	public String report () {
+		StringBuilder text = new StringBuilder();
+		text.append(String.format("rows read: %d (%.0f rows/s in the last parse)%n", getRowsRead(), getRowsPerSecond()));
+		for (Map.Entry<String, Long> entry : getSkippedRows().entrySet())
+			text.append(String.format("skipped, %s: %d%n", entry.getKey(), entry.getValue()));
+		text.append(String.format("duplicates collapsed: %d%n", getDuplicateRows()));
+		text.append(String.format("shared column values: %d hits, %d misses, about %d KB saved%n",
+				getInternHits(), getInternMisses(), getInternBytesSaved() / 1024));
+		for (Map.Entry<String, Double> entry : getPhaseMillis().entrySet())
+			text.append(String.format("%s: %.3f ms%n", entry.getKey(), entry.getValue()));
+		for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+			LatencyHistogram sizes = resultSizes.computeIfAbsent(entry.getKey(), c -> new LatencyHistogram());
+			text.append(String.format("query %s: %s, results p50=%d p99=%d max=%d%n", entry.getKey(), entry.getValue(),
+					sizes.percentile(0.5), sizes.percentile(0.99), sizes.max()));
+		}
+		MemoryUsage heap = heap();
+		text.append(String.format("heap: %.1f MB used", heap.getUsed() / 1048576.0));
+		text.append(heap.getMax() < 0 ? String.format("%n") : String.format(" of %.1f MB%n", heap.getMax() / 1048576.0));
+		return text.toString();
+	}
+
+	@Override
+	public long getRowsRead () {
+		return rowsRead.sum();
+	}
+
+	@Override
+	public Map<String, Long> getSkippedRows () {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < REASONS.length; i++)
+			counts.put(REASONS[i], skipped[i].sum());
+		return counts;
+	}
+
+	@Override
+	public long getDuplicateRows () {
+		return collapsed.sum();
+	}
+
+	@Override
+	public long getInternHits () {
+		return internHits.sum();
+	}
+
+	@Override
+	public long getInternMisses () {
+		return internMisses.sum();
+	}
+
+	@Override
+	public long getInternBytesSaved () {
+		return internBytesSaved.sum();
+	}
+
+	@Override
+	public double getRowsPerSecond () {
+		return rowsPerSecond;
+	}
+
+	@Override
+	public Map<String, Double> getPhaseMillis () {
+		Map<String, Double> millis = new LinkedHashMap<String, Double>();
+		for (String phase : PHASES) {
+			Long nanos = lastPhase.get(phase);
+			if (nanos != null)
+				millis.put(phase, nanos / 1e6);
+		}
+		return millis;
+	}
+
+	@Override
+	public Map<String, Long> getQueryCounts () {
+		return byCommand(latencies, LatencyHistogram::count);
+	}
+
+	@Override
+	public Map<String, Double> getQueryP50Millis () {
+		return millisByCommand(h -> h.percentile(0.5));
+	}
+
+	@Override
+	public Map<String, Double> getQueryP99Millis () {
+		return millisByCommand(h -> h.percentile(0.99));
+	}
+
+	@Override
+	public Map<String, Double> getQueryMaxMillis () {
+		return millisByCommand(LatencyHistogram::max);
+	}
+
+	@Override
+	public Map<String, Long> getResultSizeP50 () {
+		return byCommand(resultSizes, h -> h.percentile(0.5));
+	}
+
+	@Override
+	public Map<String, Long> getResultSizeP99 () {
+		return byCommand(resultSizes, h -> h.percentile(0.99));
+	}
+
+	@Override
+	public long getHeapUsedBytes () {
+		return heap().getUsed();
+	}
+
+	@Override
+	public long getHeapMaxBytes () {
+		return heap().getMax();
+	}
+
+	@Override
+	public void resetQueries () {
+		latencies.clear();
+		resultSizes.clear();
+	}
+
+
+	/*
+	 * Helper method that finds the position of a reason or a phase.
+	 */
+	private static int indexOf ( String [] names, String name ) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) return i;
+		}
+		throw new IllegalArgumentException("unknown metric " + name);
+	}
+
+	private static Map<String, Long> byCommand ( Map<String, LatencyHistogram> histograms, ToLongFunction<LatencyHistogram> value ) {
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+			values.put(entry.getKey(), value.applyAsLong(entry.getValue()));
+		return values;
+	}
+
+	private Map<String, Double> millisByCommand ( ToDoubleFunction<LatencyHistogram> nanos ) {
+		Map<String, Double> values = new LinkedHashMap<String, Double>();
+		for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet())
+			values.put(entry.getKey(), nanos.applyAsDouble(entry.getValue()) / 1e6);
+		return values;
+	}
+
+	private static MemoryUsage heap () {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+	}
+}
@@ -0,0 +1,115 @@
+package project3;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link Metrics} of the program, registered with the platform
+ * MBean server as {@value Metrics#OBJECT_NAME}. The maps are keyed by the skip reason, the ingest
+ * phase or the query command.
+ *
+ */
+
+public interface MetricsMXBean {
+
+	/**
+	 * Returns the number of data rows read from the CSV file by all the loads.
+	 * @return the number of rows, including the skipped ones
+	 */
+	long getRowsRead ();
+
+	/**
+	 * Returns the number of skipped rows for each reason.
+	 * @return the number of rows by reason
+	 */
+	Map<String, Long> getSkippedRows ();
+
+	/**
+	 * Returns the number of duplicate rows that were removed by all the loads.
+	 * @return the number of rows
+	 */
+	long getDuplicateRows ();
+
+	/**
+	 * Returns the number of values of the loaded columns that share the instance of an earlier equal value (see {@link StringPool}),
+	 * a repeated name or a repeated dictionary encoded value.
+	 * @return the number of hits
+	 */
+	long getInternHits ();
+
+	/**
+	 * Returns the number of distinct values of the loaded columns, the first occurrences that are not shared.
+	 * @return the number of misses
+	 */
+	long getInternMisses ();
+
+	/**
+	 * Returns an estimate of the heap that the loaded columns save by sharing their repeated values.
+	 * @return bytes
+	 */
+	long getInternBytesSaved ();
+
+	/**
+	 * Returns the parsing speed of the last load that parsed the CSV file.
+	 * @return rows per second, 0 if the file was not parsed yet
+	 */
+	double getRowsPerSecond ();
+
+	/**
+	 * Returns the duration of the last run of each ingest phase.
+	 * @return milliseconds by phase
+	 */
+	Map<String, Double> getPhaseMillis ();
+
+	/**
+	 * Returns the number of executed queries.
+	 * @return the number of queries by command
+	 */
+	Map<String, Long> getQueryCounts ();
+
+	/**
+	 * Returns the median latency of the queries.
+	 * @return milliseconds by command
+	 */
+	Map<String, Double> getQueryP50Millis ();
+
+	/**
+	 * Returns the 99th percentile of the latency of the queries.
+	 * @return milliseconds by command
+	 */
+	Map<String, Double> getQueryP99Millis ();
+
+	/**
+	 * Returns the largest latency of the queries.
+	 * @return milliseconds by command
+	 */
+	Map<String, Double> getQueryMaxMillis ();
+
+	/**
+	 * Returns the median number of results of the queries.
+	 * @return number of results by command
+	 */
+	Map<String, Long> getResultSizeP50 ();
+
+	/**
+	 * Returns the 99th percentile of the number of results of the queries.
+	 * @return number of results by command
+	 */
+	Map<String, Long> getResultSizeP99 ();
+
+	/**
+	 * Returns the used heap memory.
+	 * @return bytes
+	 */
+	long getHeapUsedBytes ();
+
+	/**
+	 * Returns the largest heap memory that the program can use.
+	 * @return bytes, -1 if the limit is not known
+	 */
+	long getHeapMaxBytes ();
+
+	/**
+	 * Removes the recorded query latencies and result sizes. The ingest counters are kept.
+	 */
+	void resetQueries ();
+}
@@ -2,7 +2,13 @@ package project3;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner; 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors; 
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * This class provides an implementation of a program that allows 
@@ -16,197 +22,195 @@ import java.util.Scanner;
 
 public class NYS_Taxes {
 
-	public static void main(String[] args) {
+	//limits of the query result cache: number of results and total number of records in them 
+	private static final int CACHE_RESULTS = 1000; 
+	private static final long CACHE_RECORDS = 1000000; 
 	
-		//verify that the command line argument exists
-		if (args.length == 0 ) {
-			System.err.println("Usage Error: the program expects file name as an argument.\n");
-			System.exit(1);
-		}
+	//time between the checks of the file for changes in interactive mode 
+	private static final long WATCH_INTERVAL_MS = 2000; 
 
-		//verify that command line argument contains a name of an existing file
-		File recordsFile = new File(args[0]);
-		if (!recordsFile.exists()){
-			System.err.println("Error: the file "+recordsFile.getAbsolutePath()+" does not exist.\n");
-			System.exit(1);
-		}
-		if (!recordsFile.canRead()){
-			System.err.println("Error: the file "+recordsFile.getAbsolutePath()+
-											" cannot be opened for reading.\n");
+	public static void main(String[] args) {
+	
+		//the data files are the arguments before the first option, each file is loaded into its own shard 
+		int options = 0; 
+		while (options < args.length && !args[options].startsWith("--")) 
+			options++; 
+		if (options == 0) {
+			System.err.println("Usage Error: the program expects file name as an argument.\n"
+					+ "Usage: NYS_Taxes FILE_NAME [FILE_NAME ...] [--batch QUERIES_FILE|- | --serve PORT]\n");
 			System.exit(1);
 		}
 
-		//open the file for reading
-		Scanner inRecords = null;
-		try {
-			inRecords = new Scanner (recordsFile ) ;
-		} catch (FileNotFoundException e) {
-			System.err.println("Error: the file "+recordsFile.getAbsolutePath()+
-											" cannot be opened for reading.\n");
-			System.exit(1);
-		}
-		
-		CSV csvData = new CSV(inRecords);
-		inRecords.close();  //close the input file since it is no longer needed 
-		
-		RecordList recordList = new RecordList(); 
-		
-		
-		//read and ignore the column header row 
-		csvData.getNextRow();
-		int lineNum = 1; 
-		
-		//read data rows 
-		ArrayList<String> row = null; 
-		//column indexes 
-		final int REQUIRED_COLS = 6;  //since the city name is in the sixth column and it is one of the required elements 
-		final int FIRST_NAME = 1;
-		final int INITIAL = 2; 
-		final int LAST_NAME = 3;
-		final int BUSINESS_NAME = 4;
-		final int CITY = 5;
-		final int STATE = 6;
-		final int COUNTRY = 7;
-		final int ZIP = 8; 
-		
-		for ( ; lineNum < csvData.getNumOfRows(); lineNum++) {
-			
-			
-			row = csvData.getNextRow();
-			
-			if (row.size() < REQUIRED_COLS) continue; //skip incomplete rows 
-			
-			int size = row.size(); 
-			
-			//create Name object 
-			String fName=row.get(FIRST_NAME);
-			String lName=row.get(LAST_NAME); 
-			String middle = row.get(INITIAL);
-			char mInitial = middle.length() >= 1 ? middle.charAt(0) : '\0'; 
-			Name name = null; 
-			try {
-				name = new Name (lName, fName, mInitial) ;
-				
-			}
-			catch (IllegalArgumentException ex ) {	
-				continue; //skip records with invalid names
-			}
-			
-			//create Location object 
-			String city = row.get(CITY); 
-			String state = size > STATE ? row.get(STATE) : null;
-			String country = size > COUNTRY ? row.get(COUNTRY) : null ;
-			String zip = size > ZIP ? row.get(ZIP) : null; 
-			
-			Location location = null; 
-			try {
-				location = new Location(city, state, country, zip  ) ; 
+		//verify that command line arguments contain names of existing files
+		List<File> recordsFiles = new ArrayList<File>(); 
+		for (int i = 0; i < options; i++) {
+			File recordsFile = new File(args[i]);
+			if (!recordsFile.exists()){
+				System.err.println("Error: the file "+recordsFile.getAbsolutePath()+" does not exist.\n");
+				System.exit(1);
 			}
-			catch (IllegalArgumentException ex ) { 	
-				continue; //skip records with invalid locations 
+			if (!recordsFile.canRead()){
+				System.err.println("Error: the file "+recordsFile.getAbsolutePath()+
+												" cannot be opened for reading.\n");
+				System.exit(1);
 			}
- 			
-			//create Record object 
-			Record record = null; 
-			try { 
-				record = new Record (name, row.get(BUSINESS_NAME), location); 
-				recordList.add(record); 
-			}
-			catch (IllegalArgumentException ex ) {
-				continue; //skip invalid records (this really should not happen in this context 
-						  //since we validated both name and location before 
-			}	
-		
-			
-		} // end of reading and parsing data 
+			recordsFiles.add(recordsFile); 
+		}
 
+		//read the records from the snapshot of each file, or parse the data rows if the file 
+		//changed since the snapshot was written (the file is split into chunks that are parsed in parallel) 
+		//the files are loaded at the same time, and the queries run on all of them concurrently 
+		//repeated queries are answered from a cache of the most recently used results of each file 
+		List<DataSetWatcher> dataSets = loadAll(recordsFiles); 
+		List<Supplier<RecordList>> shards = new ArrayList<Supplier<RecordList>>(); 
+		for (DataSetWatcher dataSet : dataSets) 
+			shards.add(dataSet::current); 
+
+		QueryEngine engine = new QueryEngine(new RecordShards(shards)); 
+		
+		//the loading and query metrics can also be read over JMX (for example with jconsole) 
+		Metrics.global().register(); 
 
 		///////////////////////////////////////////////
 		
+		// batch mode: queries are read from the file (or from the standard input if the file is "-") 
+		// and executed concurrently, the results are written in the order of the queries 
+		if (args.length >= options + 2 && args[options].equals("--batch")) {
+			runBatch(engine, args[options + 1]); 
+			return; 
+		}
 
+		// server mode: the queries are answered over HTTP on the local port until the program is stopped 
+		if (args.length >= options + 2 && args[options].equals("--serve")) {
+			runServer(engine, dataSets, args[options + 1]); 
+			return; 
+		}
 		
 		// interactive mode 
 		
+		//changes of the files are loaded in the background, each query uses the latest loaded versions 
+		for (DataSetWatcher dataSet : dataSets) 
+			dataSet.start(WATCH_INTERVAL_MS); 
 		
 		System.out.println("Enter one of the following instructions.\n"
 				+ "name NAME_KEYWORD\n"
 				+ "zip ZIP_CODE\n"
 				+ "city CITY_KEYWORD\n"
-				+ "quit\n\n");
+				+ "near LATITUDE LONGITUDE RADIUS_KM\n"
+				+ "fuzzy NAME [MAX_EDITS]\n"
+				+ "complete PREFIX [K]\n"
+				+ "count-by FIELD [top N] (fields: city, zip, state, country, business, type)\n"
+				+ "stats\n"
+				+ "FIELD VALUE FIELD VALUE ... (fields: name, city, zip, business, type, state, country)\n"
+				+ "quit\n"
+				+ "(add limit N and/or offset M after the keyword to display a part of the results)\n\n");
 		
 		Scanner in = new Scanner(System.in) ;
 		
 		String userInputString = null; 
-		Scanner userInput = null;
+		
+		//the results are buffered and written to the standard output once per query 
+		ResultWriter out = new ResultWriter(System.out); 
 		
 		do {
-			//get and parse the query from the user 
+			//get the query from the user and display its results 
 			System.out.println("Enter your query: ");
 			userInputString = in.nextLine(); 
-			userInput = new Scanner(userInputString ); 
-			String  command=null, keyword=null;
-			boolean queryExecuted = false;
-			RecordList matches = null; 
-			
-			if (userInput.hasNext() ) {
-				command = userInput.next(); 
-			}
-			if (userInput.hasNext() ) {
-				
-				keyword = userInput.next(); 
-			}
-			if ( command == null || 	//command should not be null 
-					! (                 //and it should be one of the four keywords
-					command.equalsIgnoreCase("name" ) || 
-					command.equalsIgnoreCase("zip" ) || 
-					command.equalsIgnoreCase("city" ) || 
-					command.equalsIgnoreCase("quit" )
-					) 
-				  ) 
-			{
-				System.out.println("This is not a valid query. Try again.");
-				continue; 
-			}
-			
-			try {  //process each command by calling the corresponding function 
-				if (command.equalsIgnoreCase("name") && keyword != null  ) {
-					matches = recordList.getByName( keyword ); 
-					queryExecuted = true; 
-				}
-				else if (command.equalsIgnoreCase("zip") && keyword != null ) {
-					matches = recordList.getByZip( keyword ); 
-					queryExecuted = true; 
-				}
-				else if (command.equalsIgnoreCase("city")) {
-					matches = recordList.getByCity( keyword ); 
-					queryExecuted = true; 
-				}
-			}
-			catch (IllegalArgumentException ex ) {
-				System.out.println("This is not a valid query. Invalid keyword. Try again."); 
-				continue;
-			}
-
-
-			if (queryExecuted && matches == null ) {
-				System.out.println("No matching results.\n" );
-				continue; 
+			try {
+				engine.execute(userInputString, out); 
+				out.flush(); 
 			}
-
-			if (queryExecuted ) { //display the results from the matches list 
-				
-				for ( Record r : matches)	{
-					System.out.printf ( "%s%n%n", r); 
-				}
-				
+			catch (IOException e) {
+				System.err.println("Error: the results cannot be displayed: "+e.getMessage()+"\n");
+				System.exit(1);
 			}
 			
-		} while (!userInputString.equalsIgnoreCase("quit"));
+		} while (!QueryEngine.isQuit(userInputString));
 
 		in.close();
-		userInput.close(); 
 		
 		
 	}
+	
+	/*
+	 * Helper method that starts the query server, the server keeps the program running. 
+	 * The latencies of the answered queries are reported when the program is stopped. 
+	 */
+	private static void runServer ( QueryEngine engine, List<DataSetWatcher> dataSets, String port ) {
+		try {
+			QueryServer server = new QueryServer(engine, Integer.parseInt(port)); 
+			for (DataSetWatcher dataSet : dataSets) 
+				dataSet.start(WATCH_INTERVAL_MS); 
+			server.start(); 
+			Runtime.getRuntime().addShutdownHook(new Thread( () -> {
+				server.close(); 
+				System.err.println("Queries answered: " + server.getLatencies()); 
+			})); 
+			System.out.println("Listening on http://localhost:" + server.getPort() + "/ (name?q=, zip?q=, city?q=, near?lat=&lon=&radius=, stats)"); 
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println("Error: "+port+" is not a valid port number.\n");
+			System.exit(1);
+		}
+		catch (IOException e) {
+			System.err.println("Error: the server cannot listen on port "+port+": "+e.getMessage()+"\n");
+			System.exit(1);
+		}
+	}
+	
+	/*
+	 * Helper method that loads every file into its own data set, the files are loaded concurrently. 
+	 */
+	private static List<DataSetWatcher> loadAll ( List<File> recordsFiles ) {
+		ExecutorService loader = Executors.newFixedThreadPool(Math.min(recordsFiles.size(), Runtime.getRuntime().availableProcessors())); 
+		List<Future<DataSetWatcher>> loads = new ArrayList<Future<DataSetWatcher>>(); 
+		for (File recordsFile : recordsFiles) 
+			loads.add(loader.submit( () -> new DataSetWatcher(recordsFile, () -> new QueryCache(CACHE_RESULTS, CACHE_RECORDS)) )); 
+		List<DataSetWatcher> dataSets = new ArrayList<DataSetWatcher>(); 
+		try {
+			for (int i = 0; i < loads.size(); i++) {
+				try {
+					dataSets.add(loads.get(i).get()); 
+				}
+				catch (ExecutionException e) {
+					if (!(e.getCause() instanceof IOException)) 
+						throw new RuntimeException(e.getCause()); 
+					System.err.println("Error: the file "+recordsFiles.get(i).getAbsolutePath()+
+													" cannot be opened for reading.\n");
+					System.exit(1);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			System.err.println("Error: loading of the files was interrupted.\n");
+			System.exit(1);
+		}
+		finally {
+			loader.shutdown(); 
+		}
+		return dataSets; 
+	}
+	
+	/*
+	 * Helper method that executes all the queries from the file on all available processors. 
+	 */
+	private static void runBatch ( QueryEngine engine, String queriesFile ) {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()); 
+		try (BufferedReader queries = queriesFile.equals("-") 
+						? new BufferedReader(new InputStreamReader(System.in)) 
+						: new BufferedReader(new FileReader(queriesFile))) {
+			//the results go to System.out, which is flushed but stays open, and which reports its errors with checkError() 
+			engine.executeBatch(queries, System.out, executor); 
+			if (System.out.checkError()) 
+				throw new IOException("the results cannot be written"); 
+		}
+		catch (IOException e) {
+			System.err.println("Error: the queries from "+queriesFile+" cannot be processed: "+e.getMessage()+"\n");
+			System.exit(1);
+		}
+		finally {
+			executor.shutdown(); 
+		}
+	}
 
 }
@@ -20,6 +20,13 @@ public class Name implements Comparable<Name> {
 	private char mInitial;
 	private String fName;
 	
+	//case folded last and first name, used for matching and comparisons, computed when they are first needed 
+	private String lNameKey;
+	private String fNameKey;
+	
+	//cached hash code, 0 until it is first computed 
+	private int hash;
+	
 	/* Constructs a new Name object with specified last name
 	 * @param lastName last name of person
 	 * @throws IllegalArgumentException if called with null or an empty string as the last name
@@ -53,6 +60,51 @@ public class Name implements Comparable<Name> {
 	}
 	
 	
+	/* Returns the last name
+	 * @return the last name
+	 */
+	public String getLastName() {
+		return lName;
+	}
+	
+	/* Returns the first name
+	 * @return the first name
+	 */
+	public String getFirstName() {
+		return fName;
+	}
+	
+	/* Returns the middle initial
+	 * @return the middle initial, or '\0' if there is none
+	 */
+	public char getMiddleInitial() {
+		return mInitial;
+	}
+	
+	
+	/* Returns the case folded last name, an empty string if there is no last name
+	 */
+	String getLastNameKey() {
+		String key = lNameKey;
+		if (key == null) {
+			key = CaseFold.fold(lName);
+			lNameKey = key;
+		}
+		return key;
+	}
+	
+	/* Returns the case folded first name, an empty string if there is no first name
+	 */
+	String getFirstNameKey() {
+		String key = fNameKey;
+		if (key == null) {
+			key = CaseFold.fold(fName);
+			fNameKey = key;
+		}
+		return key;
+	}
+	
+	
 	/* Two Name objects are equal if their first name, last name and middle initial are the same.
 	 * The comparison should be case insensitive and consistent with alphabetic ordering of words in an English dictionary. 
      * The Name objects should be compared by the last name first, then the first name, then the middle initial. 
@@ -69,17 +121,24 @@ public class Name implements Comparable<Name> {
 		
 		Name other = (Name) obj;
 				
-		int compareLastName = this.lName.compareToIgnoreCase(other.lName);
-		if (compareLastName == 0){
-			int compareFirstName = this.fName.compareToIgnoreCase(other.fName);
-			if (compareFirstName == 0){
-				int compareMiddleInitial = Character.compare(this.mInitial, other.mInitial);
-				if (compareMiddleInitial == 0){
-					return true;
-				}
-			}
+		return this.mInitial == other.mInitial 
+				&& getLastNameKey().equals(other.getLastNameKey()) 
+				&& getFirstNameKey().equals(other.getFirstNameKey());
+	}
+
+	/* Returns a hash code that is consistent with equals(): it is computed from the case folded 
+	 * last and first names and the middle initial, and cached after the first call 
+	 * @override hashCode method of the Object class
+	 * @return the hash code of the name
+	 */
+	@Override
+	public int hashCode(){
+		int h = hash;
+		if (h == 0) {
+			h = 31 * (31 * getLastNameKey().hashCode() + getFirstNameKey().hashCode()) + mInitial;
+			hash = h;
 		}
-		return false;
+		return h;
 	}
 
 	/* Compares this Name object with another
@@ -89,13 +148,13 @@ public class Name implements Comparable<Name> {
 	 */
 	@Override
 	public int compareTo(Name o) {
-		if(this.lName.compareToIgnoreCase(o.lName) != 0)
-			return this.lName.compareToIgnoreCase(o.lName);
-		else if (this.fName.compareToIgnoreCase(o.fName) != 0)
-			return this.fName.compareToIgnoreCase(o.fName);
-		else if (Character.compare(this.mInitial, o.mInitial) != 0)
-			return Character.compare(this.mInitial, o.mInitial);
-		return 0;
+		int compare = getLastNameKey().compareTo(o.getLastNameKey());
+		if (compare != 0)
+			return compare;
+		compare = getFirstNameKey().compareTo(o.getFirstNameKey());
+		if (compare != 0)
+			return compare;
+		return Character.compare(this.mInitial, o.mInitial);
 	}
 	
 	/* Returns the name in string format
@@ -110,11 +169,15 @@ public class Name implements Comparable<Name> {
 	 * @return true if the keyword is in the Name object, false if it is not
 	 */
 	public boolean contains(String keyword) {
-		if(lName.toLowerCase().contains(keyword.toLowerCase()))
-			return true;
-		else if(fName.toLowerCase().contains(keyword.toLowerCase()))
-			return true;
-		return false;
+		return containsFolded(CaseFold.fold(keyword));
+	}
+	
+	/* Determines whether Name object contains specified keyword without allocating any objects
+	 * @param foldedKeyword name or name substring that we are looking for, already case folded
+	 * @return true if the keyword is in the Name object, false if it is not
+	 */
+	boolean containsFolded(String foldedKeyword) {
+		return getLastNameKey().contains(foldedKeyword) || getFirstNameKey().contains(foldedKeyword);
 	}
 	
 	
@@ -0,0 +1,284 @@
+package project3;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/* This class is a trigram inverted index over the case folded last and first names of a list of records.
+ * For every sequence of three consecutive characters that appears in a last name or a first name
+ * it stores the sorted list of the positions (ids) of the records that contain it.
+ * A keyword of three or more characters can only be a substring of a name if all of its trigrams
+ * appear in that name, so intersecting their posting lists gives a small list of candidate records
+ * that have to be verified.
+ * The index is immutable once built and does not change when the list of records changes.
+ */
+
+public class NameIndex {
+
+	//shortest keyword that can be answered by the index
+	public static final int GRAM = 3;
+
+	//sorted trigram keys, and for each key i its record ids are ids[offsets[i]] to ids[offsets[i+1]-1]
+	private final long [] keys;
+	private final int [] offsets;
+	private final int [] ids;
+
+	private NameIndex (long [] keys, int [] offsets, int [] ids) {
+		this.keys = keys;
+		this.offsets = offsets;
+		this.ids = ids;
+	}
+
+	/* Builds the index for the list of records, the position of each record in the list is its id
+	 * @param records list of records to be indexed
+	 * @return index of the names of the records
+	 */
+	public static NameIndex build (List<Record> records) {
+		Map<Long, IntList> postings = new HashMap<Long, IntList>();
+		for (int id = 0; id < records.size(); id++) {
+			Name name = records.get(id).getName();
+			if (name == null)
+				continue;
+			addGrams(postings, name.getLastNameKey(), id);
+			addGrams(postings, name.getFirstNameKey(), id);
+		}
+
+		long [] keys = new long [postings.size()];
+		int k = 0;
+		int total = 0;
+		for (Map.Entry<Long, IntList> entry : postings.entrySet()) {
+			keys[k++] = entry.getKey();
+			total += entry.getValue().size;
+		}
+		Arrays.sort(keys);
+
+		int [] offsets = new int [keys.length + 1];
+		int [] ids = new int [total];
+		int pos = 0;
+		for (int i = 0; i < keys.length; i++) {
+			IntList list = postings.get(keys[i]);
+			offsets[i] = pos;
+			System.arraycopy(list.values, 0, ids, pos, list.size);
+			pos += list.size;
+		}
+		offsets[keys.length] = pos;
+		return new NameIndex(keys, offsets, ids);
+	}
+
+	/* Merges the indexes of two lists of records into the index of the list that contains the records of both
+	 * @param a index of the first list
+	 * @param aIds id in the merged list of each record of the first list
+	 * @param b index of the second list
+	 * @param bIds id in the merged list of each record of the second list
+	 * @return index of the merged list
+	 */
+	static NameIndex merge (NameIndex a, int [] aIds, NameIndex b, int [] bIds) {
+		long [] keys = new long [a.keys.length + b.keys.length];
+		int [] offsets = new int [keys.length + 1];
+		int [] ids = new int [a.ids.length + b.ids.length];
+		int k = 0;
+		int pos = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.keys.length || j < b.keys.length) {
+			long key = (j == b.keys.length || (i < a.keys.length && a.keys[i] <= b.keys[j])) ? a.keys[i] : b.keys[j];
+			int aFrom = a.offsets[i];
+			if (i < a.keys.length && a.keys[i] == key)
+				i++;
+			int bFrom = b.offsets[j];
+			if (j < b.keys.length && b.keys[j] == key)
+				j++;
+			keys[k] = key;
+			offsets[k++] = pos;
+			pos = mergeIds(a.ids, aFrom, a.offsets[i], aIds, b.ids, bFrom, b.offsets[j], bIds, ids, pos);
+		}
+		offsets[k] = pos;
+		return new NameIndex(Arrays.copyOf(keys, k), Arrays.copyOf(offsets, k + 1), ids);
+	}
+
+	/* Returns the ids of the records whose names contain all the trigrams of the keyword.
+	 * Every record whose last or first name contains the keyword is included, but some of the
+	 * returned records might not contain it, so the candidates have to be verified.
+	 * @param keyword case folded keyword
+	 * @return sorted ids of the candidate records, or null if the keyword is too short to use the index
+	 */
+	public int [] candidates (String keyword) {
+		if (keyword.length() < GRAM)
+			return null;
+
+		//find the posting list of each trigram of the keyword
+		int grams = keyword.length() - GRAM + 1;
+		int [] lists = new int [grams];
+		for (int i = 0; i < grams; i++) {
+			int found = Arrays.binarySearch(keys, gram(keyword, i));
+			if (found < 0)
+				return new int [0];
+			lists[i] = found;
+		}
+
+		//drop repeated trigrams and order the lists from the shortest to the longest
+		Arrays.sort(lists);
+		int distinct = 0;
+		for (int i = 0; i < grams; i++) {
+			if (distinct == 0 || lists[distinct - 1] != lists[i])
+				lists[distinct++] = lists[i];
+		}
+		for (int i = 1; i < distinct; i++) {
+			int k = lists[i];
+			int j = i - 1;
+			for ( ; j >= 0 && length(lists[j]) > length(k); j--)
+				lists[j + 1] = lists[j];
+			lists[j + 1] = k;
+		}
+
+		//intersect the lists starting with the shortest one
+		int [] result = Arrays.copyOfRange(ids, offsets[lists[0]], offsets[lists[0] + 1]);
+		int size = result.length;
+		for (int i = 1; i < distinct && size > 0; i++) {
+			size = intersect(result, size, lists[i]);
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/* Writes the index
+	 * @param out stream to write to
+	 * @throws IOException when the index cannot be written
+	 */
+	void write (DataOutputStream out) throws IOException {
+		Snapshot.writeLongs(out, keys);
+		Snapshot.writeInts(out, offsets);
+		Snapshot.writeInts(out, ids);
+	}
+
+	/* Reads an index written by write()
+	 * @param in buffer to read from
+	 * @param rows number of records of the list the index was built for
+	 * @return index with the same content
+	 * @throws IllegalArgumentException when the buffer does not contain a valid index for the number of records
+	 */
+	static NameIndex read (ByteBuffer in, int rows) throws IllegalArgumentException {
+		long [] keys = Snapshot.readLongs(in);
+		int [] offsets = Snapshot.readInts(in);
+		int [] ids = Snapshot.readInts(in);
+		for (int i = 1; i < keys.length; i++) {
+			if (keys[i - 1] >= keys[i])
+				throw new IllegalArgumentException("the trigrams are not sorted");
+		}
+		Snapshot.checkOffsets(offsets, keys.length, ids.length);
+		Snapshot.checkIds(ids, offsets, rows);
+		return new NameIndex(keys, offsets, ids);
+	}
+
+	/* Returns the number of distinct trigrams in the index
+	 * @return the number of distinct trigrams
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+
+	/*
+	 * Helper method that keeps only the ids in result[0..size) that also appear in the posting list of key k.
+	 * Returns the number of remaining ids.
+	 */
+	private int intersect (int [] result, int size, int k) {
+		int from = offsets[k];
+		int to = offsets[k + 1];
+		int kept = 0;
+		for (int i = 0; i < size && from < to; i++) {
+			int id = result[i];
+			from = lowerBound(from, to, id);
+			if (from < to && ids[from] == id)
+				result[kept++] = id;
+		}
+		return kept;
+	}
+
+	/*
+	 * Helper method that finds the first position in ids[from..to) with value >= id.
+	 * Gallops from the start of the range since the searched ids are increasing.
+	 */
+	private int lowerBound (int from, int to, int id) {
+		int step = 1;
+		int hi = from;
+		while (hi < to && ids[hi] < id) {
+			from = hi + 1;
+			hi += step;
+			step <<= 1;
+		}
+		hi = Math.min(hi, to);
+		while (from < hi) {
+			int mid = (from + hi) >>> 1;
+			if (ids[mid] < id)
+				from = mid + 1;
+			else
+				hi = mid;
+		}
+		return from;
+	}
+
+	/* Merges two increasing lists of ids, each translated to the ids of the merged list, into the array
+	 * @param a first ids
+	 * @param aFrom start of the first list in a
+	 * @param aTo end of the first list in a
+	 * @param aIds id in the merged list of each id of the first list
+	 * @param b second ids
+	 * @param bFrom start of the second list in b
+	 * @param bTo end of the second list in b
+	 * @param bIds id in the merged list of each id of the second list
+	 * @param out array of the merged ids
+	 * @param pos position of the first merged id in out
+	 * @return the position after the last merged id
+	 */
+	static int mergeIds (int [] a, int aFrom, int aTo, int [] aIds, int [] b, int bFrom, int bTo, int [] bIds, int [] out, int pos) {
+		while (aFrom < aTo || bFrom < bTo) {
+			if (bFrom == bTo || (aFrom < aTo && aIds[a[aFrom]] < bIds[b[bFrom]]))
+				out[pos++] = aIds[a[aFrom++]];
+			else
+				out[pos++] = bIds[b[bFrom++]];
+		}
+		return pos;
+	}
+
+	private int length (int k) {
+		return offsets[k + 1] - offsets[k];
+	}
+
+	/*
+	 * Helper method that adds the id to the posting lists of all the trigrams of the case folded value.
+	 */
+	private static void addGrams (Map<Long, IntList> postings, String folded, int id) {
+		for (int i = 0; i + GRAM <= folded.length(); i++) {
+			IntList list = postings.computeIfAbsent(gram(folded, i), key -> new IntList());
+			list.addUnique(id);
+		}
+	}
+
+	/*
+	 * Helper method that packs the three characters starting at position i into a single key.
+	 */
+	private static long gram (String s, int i) {
+		return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+	}
+
+	/*
+	 * Growable list of increasing ids used while the index is built.
+	 */
+	private static class IntList {
+		private int [] values = new int [4];
+		private int size;
+
+		void addUnique (int id) {
+			if (size > 0 && values[size - 1] == id)
+				return;
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = id;
+		}
+	}
+}
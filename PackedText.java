@@ -0,0 +1,200 @@
+package project3;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/* This class stores the case folded text of one or more columns of strings in a single byte array
+ * (UTF-8, which is plain ASCII for almost all the values) and finds the rows that contain a keyword
+ * by scanning the array.
+ * Row i occupies data[starts[i]] to data[starts[i+1]-1]: the value of each column followed by a zero byte,
+ * so a keyword (which never contains a zero byte) cannot match across two values.
+ * The scan compares eight positions at a time: it loads the eight bytes at the candidate start positions
+ * and the eight bytes at the matching end positions as two longs and, with a few arithmetic operations,
+ * finds the positions whose first and last bytes are the first and last bytes of the keyword (SWAR,
+ * SIMD within a register). Only those positions are compared with the whole keyword. Large arrays are
+ * split into parts that are scanned in parallel on the common fork-join pool.
+ * The text is immutable once built.
+ */
+
+public class PackedText {
+
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long [].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+
+	//bytes scanned by each parallel task
+	private static final int TASK_BYTES = 1 << 18;
+
+	private final byte [] data;
+	private final int [] starts;
+
+	/* Packs the case folded values of the columns, row by row
+	 * @param columns arrays of values of the same length, a null value is packed as an empty string
+	 */
+	public PackedText (String [] ... columns) {
+		int rows = columns.length == 0 ? 0 : columns[0].length;
+		starts = new int [rows + 1];
+		byte [] bytes = new byte [rows * 16 + 16];
+		int size = 0;
+		for (int row = 0; row < rows; row++) {
+			starts[row] = size;
+			for (String [] column : columns) {
+				byte [] value = CaseFold.fold(column[row]).getBytes(StandardCharsets.UTF_8);
+				if (size + value.length + 1 > bytes.length)
+					bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + value.length + 1));
+				System.arraycopy(value, 0, bytes, size, value.length);
+				size += value.length;
+				bytes[size++] = 0;
+			}
+		}
+		starts[rows] = size;
+		data = Arrays.copyOf(bytes, size);
+	}
+
+	/* Returns the rows in which the value of any of the columns contains the keyword
+	 * @param foldedKeyword case folded keyword
+	 * @return increasing numbers of the matching rows
+	 */
+	public int [] match (String foldedKeyword) {
+		byte [] keyword = foldedKeyword.getBytes(StandardCharsets.UTF_8);
+		if (keyword.length == 0)
+			return allRows();
+		int rows = starts.length - 1;
+		if (data.length <= TASK_BYTES)
+			return scan(keyword, 0, rows);
+		return ForkJoinPool.commonPool().invoke(new ScanTask(keyword, 0, rows));
+	}
+
+	/* Determines if the value of any of the columns in the row contains the keyword
+	 * @param row row number
+	 * @param keyword UTF-8 bytes of the case folded keyword
+	 * @return true if the row contains the keyword
+	 */
+	public boolean contains (int row, byte [] keyword) {
+		int last = starts[row + 1] - keyword.length;
+		for (int p = starts[row]; p <= last; p++) {
+			if (matchesAt(keyword, p))
+				return true;
+		}
+		return false;
+	}
+
+	/* Returns the number of bytes of the packed text
+	 * @return the number of bytes
+	 */
+	public int byteSize () {
+		return data.length;
+	}
+
+
+	/*
+	 * Helper method that finds the matching rows in rows[from .. to).
+	 */
+	private int [] scan (byte [] keyword, int fromRow, int toRow) {
+		int [] rows = new int [16];
+		int count = 0;
+		int m = keyword.length;
+		long first = ONES * (keyword[0] & 0xFF);
+		long last = ONES * (keyword[m - 1] & 0xFF);
+		int end = starts[toRow];
+		int row = fromRow;
+		int p = starts[fromRow];
+
+		while (p + m - 1 < end) {
+			//positions p .. p+7 are compared at once while the eight bytes at their ends are inside the array
+			if (p + m + 7 <= data.length) {
+				long x = ((long) LONGS.get(data, p) ^ first) | ((long) LONGS.get(data, p + m - 1) ^ last);
+				long zeros = (x - ONES) & ~x & HIGHS;
+				if (zeros == 0) {
+					p += 8;
+					continue;
+				}
+				//the lowest flagged byte is always a real candidate, the ones above it can be false positives
+				int candidate = p + (Long.numberOfTrailingZeros(zeros) >>> 3);
+				if (candidate + m > end) {
+					break;
+				}
+				if (matchesAt(keyword, candidate)) {
+					while (starts[row + 1] <= candidate)
+						row++;
+					if (count == rows.length)
+						rows = Arrays.copyOf(rows, count * 2);
+					rows[count++] = row;
+					//the rest of the row does not have to be scanned
+					p = starts[++row];
+				}
+				else {
+					p = candidate + 1;
+				}
+			}
+			else {
+				if (matchesAt(keyword, p)) {
+					while (starts[row + 1] <= p)
+						row++;
+					if (count == rows.length)
+						rows = Arrays.copyOf(rows, count * 2);
+					rows[count++] = row;
+					p = starts[++row];
+				}
+				else {
+					p++;
+				}
+			}
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	/*
+	 * Helper method that compares the keyword with the bytes at the position.
+	 */
+	private boolean matchesAt (byte [] keyword, int p) {
+		for (int i = 0; i < keyword.length; i++) {
+			if (data[p + i] != keyword[i])
+				return false;
+		}
+		return true;
+	}
+
+	private int [] allRows () {
+		int [] rows = new int [starts.length - 1];
+		for (int row = 0; row < rows.length; row++)
+			rows[row] = row;
+		return rows;
+	}
+
+	/*
+	 * Task that scans a range of rows, splitting it in halves while it is large.
+	 */
+	@SuppressWarnings("serial")
+	private class ScanTask extends RecursiveTask<int []> {
+		private final byte [] keyword;
+		private final int fromRow;
+		private final int toRow;
+
+		ScanTask (byte [] keyword, int fromRow, int toRow) {
+			this.keyword = keyword;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected int [] compute () {
+			if (starts[toRow] - starts[fromRow] <= TASK_BYTES || toRow - fromRow < 2)
+				return scan(keyword, fromRow, toRow);
+			int middle = (fromRow + toRow) >>> 1;
+			ScanTask right = new ScanTask(keyword, middle, toRow);
+			right.fork();
+			int [] left = new ScanTask(keyword, fromRow, middle).compute();
+			int [] rest = right.join();
+			int [] rows = Arrays.copyOf(left, left.length + rest.length);
+			System.arraycopy(rest, 0, rows, left.length, rest.length);
+			return rows;
+		}
+	}
+}
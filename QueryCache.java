@@ -0,0 +1,154 @@
+package project3;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/* This class is a bounded cache of query results with least recently used eviction. 
+ * The results are stored under the name of the query command and its normalized keyword 
+ * (for example "city" and "brooklyn"). The cache holds at most the specified number of results 
+ * and at most the specified total number of records in all the results; when either limit is 
+ * exceeded the least recently used results are evicted. Results larger than a quarter of the 
+ * record limit are not cached. 
+ * The cache belongs to a single RecordList and is cleared when that list is modified. 
+ * All the methods are synchronized, so the cache can be shared by concurrent queries. 
+ */
+
+public class QueryCache {
+	
+	//marker stored for queries without any matching records 
+	private static final RecordList NO_MATCHES = new RecordList(); 
+	
+	private final int maxEntries; 
+	private final long maxRecords; 
+	private final LinkedHashMap<String, RecordList> results = new LinkedHashMap<String, RecordList>(16, 0.75f, true); 
+	
+	private long records; 
+	private long hits; 
+	private long misses; 
+	private long evictions; 
+	
+	//version of the list when the results were stored, which changes with every modification of the list, set() included 
+	private int version; 
+	
+	/* Constructs a cache with the specified limits 
+	 * @param maxEntries maximum number of cached results 
+	 * @param maxRecords maximum total number of records in the cached results 
+	 * @throws IllegalArgumentException if any of the limits is not positive 
+	 */
+	public QueryCache (int maxEntries, long maxRecords) {
+		if (maxEntries <= 0 || maxRecords <= 0) 
+			throw new IllegalArgumentException("cache limits have to be positive"); 
+		this.maxEntries = maxEntries; 
+		this.maxRecords = maxRecords; 
+	}
+	
+	/* Returns the cached result of the query 
+	 * @param command query command 
+	 * @param keyword normalized keyword 
+	 * @param version current version of the list 
+	 * @return the cached result, NO_MATCHES marker for a cached empty result, or null if the query is not cached 
+	 */
+	synchronized RecordList get (String command, String keyword, int version) {
+		validate(version); 
+		RecordList result = results.get(key(command, keyword)); 
+		if (result == null) 
+			misses++; 
+		else 
+			hits++; 
+		return result; 
+	}
+	
+	/* Stores the result of the query 
+	 * @param command query command 
+	 * @param keyword normalized keyword 
+	 * @param version version of the list the result was computed from 
+	 * @param result the result, or null if there were no matching records 
+	 */
+	synchronized void put (String command, String keyword, int version, RecordList result) {
+		validate(version); 
+		if (result == null) 
+			result = NO_MATCHES; 
+		if (result.size() > maxRecords / 4) 
+			return; 
+		RecordList previous = results.put(key(command, keyword), result); 
+		if (previous != null) 
+			records -= previous.size(); 
+		records += result.size(); 
+		
+		//evict the least recently used results 
+		Iterator<Map.Entry<String, RecordList>> oldest = results.entrySet().iterator(); 
+		while ((results.size() > maxEntries || records > maxRecords) && oldest.hasNext()) {
+			records -= oldest.next().getValue().size(); 
+			oldest.remove(); 
+			evictions++; 
+		}
+	}
+	
+	/* Determines if the result is the marker of a query without matches 
+	 */
+	static boolean isNoMatches (RecordList result) {
+		return result == NO_MATCHES; 
+	}
+	
+	/* Removes all the cached results 
+	 */
+	public synchronized void clear () {
+		results.clear(); 
+		records = 0; 
+	}
+	
+	/* Returns the number of cached results 
+	 * @return the number of cached results 
+	 */
+	public synchronized int size () {
+		return results.size(); 
+	}
+	
+	/* Returns the number of queries answered from the cache 
+	 * @return the number of hits 
+	 */
+	public synchronized long getHits () {
+		return hits; 
+	}
+	
+	/* Returns the number of queries that were not in the cache 
+	 * @return the number of misses 
+	 */
+	public synchronized long getMisses () {
+		return misses; 
+	}
+	
+	/* Returns the number of results evicted to stay within the limits 
+	 * @return the number of evictions 
+	 */
+	public synchronized long getEvictions () {
+		return evictions; 
+	}
+	
+	/* Returns a summary of the statistics of this cache 
+	 * @return string with the number of results, records, hits, misses and evictions 
+	 */
+	@Override
+	public synchronized String toString () {
+		long total = hits + misses; 
+		return String.format("%d results (%d records), %d hits, %d misses (%.1f%% hit rate), %d evictions", 
+				results.size(), records, hits, misses, total == 0 ? 0.0 : 100.0 * hits / total, evictions); 
+	}
+	
+	
+	/*
+	 * Helper method that drops all the results computed from an older version of the list. 
+	 */
+	private void validate (int version) {
+		if (version != this.version) {
+			clear(); 
+			this.version = version; 
+		}
+	}
+	
+	private static String key (String command, String keyword) {
+		return command + ' ' + keyword; 
+	}
+}
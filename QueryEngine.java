@@ -0,0 +1,369 @@
+package project3;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * This class executes the queries of the NYS_Taxes program against a list of records.
+ *
+ * <p>A query is a single line with a command followed by a keyword, for example {@code name smith},
+ * {@code zip 11223} or {@code city brooklyn}. The {@code near LATITUDE LONGITUDE RADIUS_KM} command takes
+ * three keywords, for example {@code near 40.7 -73.9 2.5}, and lists the records within the radius of the point,
+ * closest first. The {@code fuzzy NAME [MAX_EDITS]} command lists the records with a name that is within a
+ * few edits of the keyword, for example {@code fuzzy smyth}. The {@code complete PREFIX [K]} command lists the
+ * K most frequent last names and cities that start with the prefix. The {@code count-by FIELD [top N]} command
+ * lists the values of a field (city, zip, state, country, business or type) with their numbers of records, the
+ * most frequent first, for example {@code count-by city top 20}. The {@code stats} command displays the
+ * {@link Metrics} of the program: the loading of the data set and the latencies and result sizes of the
+ * queries executed so far, by command. The output of a query is the same text that the
+ * interactive mode displays for it. The keyword can be followed by {@code limit N} and/or {@code offset M}
+ * to display only N of the matching records, starting with the record at position M (counted from 0),
+ * for example {@code city brooklyn limit 20 offset 40}.
+ *
+ * <p>Several predicates can be combined in a single query, for example
+ * {@code name smith city brooklyn type facilitator state NY}, see {@link CompoundQuery}.
+ *
+ * <p>The results are written with a {@link ResultWriter}, directly from the fields of the records.
+ *
+ * <p>The list of records is only read, so a single engine can execute many queries concurrently.
+ * The engine can also execute the queries against the current version of a data set that changes
+ * (see {@link DataSetWatcher}): each query gets the current list once and uses it until it finishes.
+ * A data set split into several shards (see {@link RecordShards}) is queried on all of its shards concurrently.
+ * {@link #executeBatch(BufferedReader, OutputStream, ExecutorService)} uses this to execute a whole
+ * file of queries on a thread pool, while writing the results in the order of the queries.
+ *
+ */
+
+public class QueryEngine {
+
+	//number of queries that are executed concurrently before their results are written
+	private static final int BATCH_WINDOW = 1024;
+
+	//number of completions listed by the complete command when it does not specify one
+	private static final int DEFAULT_COMPLETIONS = 10;
+
+	private final RecordShards records;
+	private final Metrics metrics = Metrics.global();
+
+	/**
+	 * Constructs an engine that executes the queries against the list of records.
+	 * @param recordList list of records, it should not be modified while queries are executed
+	 * @throws NullPointerException when {@code recordList} is null
+	 */
+	public QueryEngine ( RecordList recordList ) {
+		if (recordList == null ) throw new NullPointerException("recordList is null");
+		this.records = new RecordShards(Collections.singletonList( () -> recordList ));
+	}
+
+	/**
+	 * Constructs an engine that executes each query against the current list of records.
+	 * @param records supplies the current list of records, the supplied lists should not be modified
+	 * @throws NullPointerException when {@code records} is null
+	 */
+	public QueryEngine ( Supplier<RecordList> records ) {
+		if (records == null ) throw new NullPointerException("records is null");
+		this.records = new RecordShards(Collections.singletonList(records));
+	}
+
+	/**
+	 * Constructs an engine that executes each query against the current lists of all the shards.
+	 * @param shards the shards of the data set
+	 * @throws NullPointerException when {@code shards} is null
+	 */
+	public QueryEngine ( RecordShards shards ) {
+		if (shards == null ) throw new NullPointerException("shards is null");
+		this.records = shards;
+	}
+
+	/**
+	 * Determines if the line is the instruction that ends the program.
+	 * @param line query line
+	 * @return true if the line is {@code quit} (case insensitive)
+	 */
+	public static boolean isQuit ( String line ) {
+		return line.equalsIgnoreCase("quit");
+	}
+
+	/**
+	 * Executes a single query.
+	 * @param line query line
+	 * @return the output of the query
+	 */
+	public String execute ( String line ) {
+		return new String(executeToBytes(line), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Executes a single query and writes its output.
+	 * The writer is not flushed.
+	 * @param line query line
+	 * @param out the output of the query is written to it
+	 * @throws IOException when the output cannot be written
+	 */
+	public void execute ( String line, ResultWriter out ) throws IOException {
+		if (isQuit(line.trim())) return;
+		long start = System.nanoTime();
+		int results = run(line, out);
+		metrics.query(results < 0 ? "invalid" : commandOf(line), System.nanoTime() - start, Math.max(results, 0));
+	}
+
+	/**
+	 * Executes all the queries read from the input and writes their outputs in the order of the queries.
+	 * The queries are executed concurrently on the provided executor. Each output is preceded by a line
+	 * with the query. Empty lines are skipped and a {@code quit} line ends the batch.
+	 * @param queries input with one query per line
+	 * @param out output for the results
+	 * @param executor executor that runs the queries
+	 * @return the number of executed queries
+	 * @throws IOException when the queries cannot be read or the results cannot be written
+	 */
+	public int executeBatch ( BufferedReader queries, OutputStream out, ExecutorService executor ) throws IOException {
+		ResultWriter writer = new ResultWriter(out);
+		int count = 0;
+		boolean done = false;
+		while (!done) {
+			//read the next window of queries and submit all of them
+			List<String> lines = new ArrayList<String>(BATCH_WINDOW);
+			List<Future<byte []>> results = new ArrayList<Future<byte []>>(BATCH_WINDOW);
+			while (lines.size() < BATCH_WINDOW) {
+				String line = queries.readLine();
+				if (line == null || isQuit(line.trim())) {
+					done = true;
+					break;
+				}
+				if (line.isBlank()) continue;
+				lines.add(line);
+				results.add(executor.submit( () -> executeToBytes(line) ));
+			}
+
+			//write the results of the window in the order of the queries
+			for (int i = 0; i < lines.size(); i++) {
+				writer.write("Query: ");
+				writer.writeLine(lines.get(i));
+				writer.write(get(results.get(i)));
+			}
+			count += lines.size();
+		}
+		writer.flush();
+		return count;
+	}
+
+
+	/*
+	 * Helper method that executes a single query and returns the number of displayed results, or -1 if the query is not valid.
+	 */
+	private int run ( String line, ResultWriter out ) throws IOException {
+		Scanner userInput = new Scanner(line);
+		String  command=null, keyword=null, longitude=null, radius=null;
+		int number = -1;  //optional number of edits of fuzzy, of completions of complete, or of values of count-by
+		boolean queryExecuted = false;
+		RecordList matches = null;
+		int limit = Integer.MAX_VALUE;
+		int offset = 0;
+		boolean validOptions = true;
+		List<String> predicates = new ArrayList<String>();  //field and value pairs of a compound query
+
+		if (userInput.hasNext() ) {
+			command = userInput.next();
+		}
+		if (userInput.hasNext() ) {
+			keyword = userInput.next();
+		}
+		if (command != null && command.equalsIgnoreCase("near") ) {
+			longitude = userInput.hasNext() ? userInput.next() : null;
+			radius = userInput.hasNext() ? userInput.next() : null;
+		}
+		if (command != null && (command.equalsIgnoreCase("fuzzy") || command.equalsIgnoreCase("complete")) && userInput.hasNextInt() ) {
+			number = userInput.nextInt();
+		}
+		//optional paging of the results and more predicates, other words after the keyword are ignored
+		while (userInput.hasNext() ) {
+			String option = userInput.next();
+			if (option.equalsIgnoreCase("top") && command.equalsIgnoreCase("count-by")) {
+				number = userInput.hasNextInt() ? userInput.nextInt() : -1;
+				if (number < 0) {
+					validOptions = false;
+					break;
+				}
+			}
+			else if (option.equalsIgnoreCase("limit") || option.equalsIgnoreCase("offset")) {
+				int value = userInput.hasNextInt() ? userInput.nextInt() : -1;
+				if (value < 0) {
+					validOptions = false;
+					break;
+				}
+				if (option.equalsIgnoreCase("limit")) limit = value;
+				else offset = value;
+			}
+			else if (CompoundQuery.isField(option)) {
+				if (!userInput.hasNext() || command.equalsIgnoreCase("near") || command.equalsIgnoreCase("fuzzy") || command.equalsIgnoreCase("complete")
+						|| command.equalsIgnoreCase("count-by")) {
+					validOptions = false;
+					break;
+				}
+				predicates.add(option);
+				predicates.add(userInput.next());
+			}
+		}
+		userInput.close();
+
+		if ( command == null || 	//command should not be null
+				! (                 //and it should be one of the four keywords
+				command.equalsIgnoreCase("name" ) ||
+				command.equalsIgnoreCase("zip" ) ||
+				command.equalsIgnoreCase("city" ) ||
+				command.equalsIgnoreCase("near" ) ||
+				command.equalsIgnoreCase("fuzzy" ) ||
+				command.equalsIgnoreCase("complete" ) ||
+				command.equalsIgnoreCase("count-by" ) ||
+				command.equalsIgnoreCase("stats" ) ||
+				command.equalsIgnoreCase("quit" ) ||
+				CompoundQuery.isField(command)    //or one of the other fields of a compound query
+				)
+			  || !validOptions )
+		{
+			out.writeLine("This is not a valid query. Try again.");
+			return -1;
+		}
+
+		//with a limit only the records up to the end of the requested page are needed
+		int top = (limit == Integer.MAX_VALUE) ? 0 : (int) Math.min( Math.max( (long) offset + limit, 1), Integer.MAX_VALUE);
+
+		if (command.equalsIgnoreCase("stats")) {
+			out.writeLine("records: " + records.size());
+			out.write(metrics.report());
+			return 0;
+		}
+
+		try {  //process each command by calling the corresponding function
+			if (!predicates.isEmpty() || (CompoundQuery.isField(command) && !command.equalsIgnoreCase("name")
+					&& !command.equalsIgnoreCase("zip") && !command.equalsIgnoreCase("city")) ) {
+				CompoundQuery query = new CompoundQuery().add( command, keyword );
+				for (int i = 0; i < predicates.size(); i += 2)
+					query.add( predicates.get(i), predicates.get(i + 1) );
+				matches = records.execute( query );
+				queryExecuted = true;
+			}
+			else if (command.equalsIgnoreCase("name") && keyword != null  ) {
+				matches = top > 0 ? records.getTopByName( keyword, top ) : records.getByName( keyword );
+				queryExecuted = true;
+			}
+			else if (command.equalsIgnoreCase("zip") && keyword != null ) {
+				matches = top > 0 ? records.getTopByZip( keyword, top ) : records.getByZip( keyword );
+				queryExecuted = true;
+			}
+			else if (command.equalsIgnoreCase("city")) {
+				matches = top > 0 ? records.getTopByCity( keyword, top ) : records.getByCity( keyword );
+				queryExecuted = true;
+			}
+			else if (command.equalsIgnoreCase("fuzzy")) {
+				//by default one edit for short keywords and two for longer ones
+				int maxEdits = (number >= 0 || keyword == null) ? number : (keyword.length() <= 4 ? 1 : 2);
+				matches = records.getByFuzzyName( keyword, maxEdits );
+				queryExecuted = true;
+			}
+			else if (command.equalsIgnoreCase("complete")) {
+				List<CompletionIndex.Completion> completions = records.complete( keyword, number < 0 ? DEFAULT_COMPLETIONS : number );
+				if (completions.isEmpty()) {
+					out.writeLine("No matching results.\n");
+				}
+				for (CompletionIndex.Completion completion : completions) {
+					out.writeLine(completion.toString());
+				}
+				return completions.size();
+			}
+			else if (command.equalsIgnoreCase("count-by")) {
+				List<Aggregates.Count> counts = records.countBy( keyword, number < 0 ? Integer.MAX_VALUE : number );
+				if (counts.isEmpty()) {
+					out.writeLine("No matching results.\n");
+				}
+				for (Aggregates.Count count : counts) {
+					out.writeLine(count.toString());
+				}
+				return counts.size();
+			}
+			else if (command.equalsIgnoreCase("near")) {
+				if (keyword == null || longitude == null || radius == null)
+					throw new IllegalArgumentException("near expects a latitude, a longitude and a radius");
+				matches = records.getNear( Double.parseDouble(keyword), Double.parseDouble(longitude), Double.parseDouble(radius) );
+				queryExecuted = true;
+			}
+		}
+		catch (IllegalArgumentException ex ) {  //also thrown for the numbers of near that cannot be parsed
+			out.writeLine("This is not a valid query. Invalid keyword. Try again.");
+			return -1;
+		}
+
+		if (queryExecuted && matches == null ) {
+			out.writeLine("No matching results.\n");
+			return 0;
+		}
+
+		if (queryExecuted ) { //display the requested part of the matches list
+			return out.writeRecords(matches, offset, limit);
+		}
+		return 0;
+	}
+
+	/*
+	 * Helper method that returns the command under which the latency of a valid query is recorded:
+	 * the first word, or compound for the queries with several predicates.
+	 */
+	private static String commandOf ( String line ) {
+		String [] words = line.trim().split("\\s+");
+		String command = words[0].toLowerCase();
+		boolean single = command.equals("name") || command.equals("zip") || command.equals("city");
+		if (CompoundQuery.isField(command) && !single) return "compound";
+		for (int i = 2; single && i < words.length; i++) {
+			if (CompoundQuery.isField(words[i])) return "compound";
+		}
+		return command;
+	}
+
+	/*
+	 * Helper method that executes a single query and returns its output encoded as UTF-8.
+	 */
+	private byte [] executeToBytes ( String line ) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			ResultWriter out = new ResultWriter(bytes);
+			execute(line, out);
+			out.flush();
+		}
+		catch (IOException ex) {
+			//a ByteArrayOutputStream does not throw
+			throw new UncheckedIOException(ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	/*
+	 * Helper method that waits for the result of a query.
+	 */
+	private static byte [] get ( Future<byte []> result ) throws IOException {
+		try {
+			return result.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("batch was interrupted", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package project3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server that executes the queries of the NYS_Taxes program for many concurrent clients.
+ *
+ * <p>The server listens on the loopback address and answers {@code GET} requests:
+ * <ul>
+ * <li>{@code /name?q=KEYWORD}, {@code /zip?q=ZIP} and {@code /city?q=KEYWORD}, with the optional
+ * {@code limit} and {@code offset} parameters,</li>
+ * <li>{@code /near?lat=LATITUDE&lon=LONGITUDE&radius=RADIUS_KM},</li>
+ * <li>{@code /stats}, the latencies of the queries answered so far, followed by the {@link Metrics} of the program.</li>
+ * </ul>
+ * The body of a query response is the text that the interactive mode displays for the query, streamed
+ * with a {@link ResultWriter}.
+ *
+ * <p>Every request is handled on its own virtual thread when the runtime provides them (Java 21 and later),
+ * otherwise on a cached pool of platform threads. All the requests share the engine, which reads the
+ * current immutable version of the records and their indexes without locking.
+ *
+ */
+
+public class QueryServer implements Closeable {
+
+	static {
+		//responses are streamed in chunks, without TCP_NODELAY the last chunk waits for the delayed
+		//acknowledgement of the previous one (tens of milliseconds), the property is read once when the first server is created
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final QueryEngine engine;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * Constructs a server for the engine bound to the port of the loopback address.
+	 * The server does not accept requests until {@link #start()} is called.
+	 * @param engine engine that executes the queries
+	 * @param port port number, 0 for any free port
+	 * @throws IOException when the port cannot be bound
+	 * @throws NullPointerException when {@code engine} is null
+	 */
+	public QueryServer ( QueryEngine engine, int port ) throws IOException {
+		if (engine == null ) throw new NullPointerException("engine is null");
+		this.engine = engine;
+		this.executor = newRequestExecutor();
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start () {
+		server.start();
+	}
+
+	/**
+	 * Returns the port the server is bound to.
+	 * @return the port number
+	 */
+	public int getPort () {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the histogram of the latencies of the answered queries, in nanoseconds.
+	 * @return the latencies
+	 */
+	public LatencyHistogram getLatencies () {
+		return latencies;
+	}
+
+	/**
+	 * Stops the server, the requests that are being handled are not waited for.
+	 */
+	@Override
+	public void close () {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Creates the executor that runs one task per request: a virtual thread per task executor
+	 * when the runtime provides one, a cached thread pool otherwise.
+	 * The virtual thread executor is looked up by reflection, so the program still runs on Java 17.
+	 * @return the executor for the requests
+	 */
+	public static ExecutorService newRequestExecutor () {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException ex) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+
+	/*
+	 * Helper method that answers a single request.
+	 */
+	private void handle ( HttpExchange exchange ) throws IOException {
+		long start = System.nanoTime();
+		try {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				reply(exchange, 405, "Only GET requests are supported.\n");
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/stats")) {
+				reply(exchange, 200, "queries: " + latencies + "\n" + Metrics.global().report());
+				return;
+			}
+			String line = toQuery(path, parameters(exchange.getRequestURI().getRawQuery()));
+			if (line == null) {
+				reply(exchange, 404, "Unknown query. Use /name?q=, /zip?q=, /city?q=, /near?lat=&lon=&radius= or /stats.\n");
+				return;
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			try (ResultWriter out = new ResultWriter(exchange.getResponseBody())) {
+				engine.execute(line, out);
+			}
+			latencies.record(System.nanoTime() - start);
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	/*
+	 * Helper method that converts the path and the parameters of a request to a query line,
+	 * or returns null if the path is not a query.
+	 */
+	private static String toQuery ( String path, Map<String, String> parameters ) {
+		StringBuilder line = new StringBuilder();
+		switch (path) {
+		case "/name":
+		case "/zip":
+		case "/city":
+			line.append(path.substring(1)).append(' ').append(parameters.getOrDefault("q", ""));
+			break;
+		case "/near":
+			line.append("near ").append(parameters.getOrDefault("lat", "")).append(' ')
+				.append(parameters.getOrDefault("lon", "")).append(' ').append(parameters.getOrDefault("radius", ""));
+			break;
+		default:
+			return null;
+		}
+		for (String option : new String [] {"limit", "offset"}) {
+			if (parameters.containsKey(option))
+				line.append(' ').append(option).append(' ').append(parameters.get(option));
+		}
+		return line.toString();
+	}
+
+	/*
+	 * Helper method that decodes the parameters of the query string of a request.
+	 */
+	private static Map<String, String> parameters ( String rawQuery ) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (rawQuery == null)
+			return parameters;
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			try {
+				parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+			catch (IllegalArgumentException ex) {
+				//malformed escapes, the parameter is ignored
+			}
+		}
+		return parameters;
+	}
+
+	/*
+	 * Helper method that sends a short text response.
+	 */
+	private static void reply ( HttpExchange exchange, int status, String text ) throws IOException {
+		byte [] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -4,10 +4,12 @@ package project3;
 /* The Record class stores information about a particular record/row from the input file. 
  * Stores person name, the business associated with the record, and the location associated with the record
  * This class provides a three parameter constructor: Record ( Name name, String business, Location location) 
+ * and a four parameter constructor that also takes the registration type (PREPARER, FACILITATOR, ...) 
  * The class provides public getters as follows: 
  * Name getName()
  * String getBusiness()
  * Location getLocation()
+ * String getType()
  * This class should implement Comparable<Record> interface. 
  */
 
@@ -15,6 +17,13 @@ public class Record implements Comparable<Record>{
 	private Name name;
 	private String business;
 	private Location location;
+	private String type;
+	
+	//case folded business name, used for comparisons, computed when it is first needed (or taken from the pool) 
+	private String businessKey;
+	
+	//cached hash code, 0 until it is first computed 
+	private int hash;
 	
 	
 	/* Constructs a new Record object specified with name, business, and location
@@ -23,9 +32,29 @@ public class Record implements Comparable<Record>{
      * @param location a Location object
      */
 	public Record ( Name name, String business, Location location){
+		this(name, business, location, null);
+	}
+	
+	/* Constructs a new Record object specified with name, business, location and registration type
+	 * @param name a Name object
+     * @param business business
+     * @param location a Location object
+     * @param type registration type, possibly null
+     */
+	public Record ( Name name, String business, Location location, String type){
+		this(name, business, location, type, null);
+	}
+	
+	/* Constructs a new Record object that uses the canonical instances of the business and the registration type from the pool
+	 * @param pool pool of canonical values, or null to store the values as they are
+	 */
+	Record ( Name name, String business, Location location, String type, StringPool pool){
 		this.name = name;
-		this.business = business;
+		this.business = StringPool.intern(pool, business);
 		this.location = location;
+		this.type = StringPool.intern(pool, type);
+		if (pool != null)
+			this.businessKey = StringPool.intern(pool, CaseFold.fold(business));
 	}
 	
 	/* Returns name on the record
@@ -49,6 +78,13 @@ public class Record implements Comparable<Record>{
 		return location;
 	}
 	
+	/* Returns the registration type of the record
+	 * @return the registration type, or null if it is not known
+	 */
+	public String getType(){
+		return type;
+	}
+	
 	/* Compares two Record objects are equal if all of their components
 	 * @override equals method of Object class.
 	 * @return true if name, business, and location are all equal, false if not
@@ -62,14 +98,28 @@ public class Record implements Comparable<Record>{
 		
 		int compareName = this.name.compareTo(other.name);
 		if (compareName != 0 ) return false;
-		int compareBusiness = this.business.compareToIgnoreCase(other.business);
-		if(compareBusiness != 0 ) return false;
+		if (!getBusinessKey().equals(other.getBusinessKey())) return false;
 		int compareLocation = this.location.compareTo(other.location);
 		if (compareLocation != 0) return false;
 		
 		return true;
 	}
 	
+	/* Returns a hash code that is consistent with equals(): it is computed from the hash codes of the name 
+	 * and the location and from the case folded business name, and cached after the first call 
+	 * @override hashCode method of Object class
+	 * @return the hash code of the record
+	 */
+	@Override
+	public int hashCode () {
+		int h = hash;
+		if (h == 0) {
+			h = 31 * (31 * (name == null ? 0 : name.hashCode()) + getBusinessKey().hashCode()) + (location == null ? 0 : location.hashCode());
+			hash = h;
+		}
+		return h;
+	}
+	
 	/* This gives a string representation of a person's record
 	 * @override toString method of String class
 	 * @return two-line string in the following format: LAST_NAME, FIRST_NAME, INITIAL 
@@ -88,10 +138,21 @@ public class Record implements Comparable<Record>{
 	 */
 	@Override
 	public int compareTo(Record o) {
-		if(this.name.compareTo(o.name) != 0)
-			return this.name.compareTo(o.name);
-		else if (this.location.compareTo(o.location) != 0)
-			return this.location.compareTo(o.location);
-		return 0;
+		int compare = this.name.compareTo(o.name);
+		if (compare != 0)
+			return compare;
+		return this.location.compareTo(o.location);
+	}
+
+	/*
+	 * Helper method that returns the case folded business name.
+	 */
+	private String getBusinessKey() {
+		String key = businessKey;
+		if (key == null) {
+			key = CaseFold.fold(business);
+			businessKey = key;
+		}
+		return key;
 	}
 }
@@ -0,0 +1,475 @@
+package project3;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+
+/* This class stores the same data as a list of records, but column by column (a struct of arrays).
+ * The names are kept in String arrays, the middle initials in a char array and the coordinates in double arrays. The columns with
+ * many repeated values (city, state, country, zip code, business and registration type) are
+ * dictionary encoded: each row stores only the int code of its value.
+ * A row takes a few dozen bytes of arrays instead of the Record, Name and Location objects and their
+ * strings, and the scans over the city column only match each distinct city once and then walk a dense int array.
+ * A sorted and indexed RecordList keeps its records only in its columns (see RecordList.buildIndexes()),
+ * Record objects are materialized with get() when the records are read.
+ * The store is immutable once built.
+ */
+
+public class RecordColumns {
+
+	private final int size;
+
+	private final String [] lastNames;
+	private final String [] firstNames;
+	private final char [] initials;
+	private final double [] latitudes;
+	private final double [] longitudes;
+
+	private final int [] cities;
+	private final int [] states;
+	private final int [] countries;
+	private final int [] zips;
+	private final int [] businesses;
+	private final int [] types;
+
+	private final StringDictionary cityValues;
+	private final StringDictionary stateValues;
+	private final StringDictionary countryValues;
+	private final StringDictionary zipValues;
+	private final StringDictionary businessValues;
+	private final StringDictionary typeValues;
+
+	//case folded cities and zip codes, in the order of their codes
+	private String [] cityKeys;
+	private String [] zipKeys;
+	private PackedText cityText;
+	private PackedText zipText;
+
+	//case folded last and first names packed for scanning, built when they are first needed
+	private volatile PackedText nameText;
+
+	private RecordColumns (int size) {
+		this(size, new String [size], new String [size], new char [size], new double [size], new double [size],
+				new int [size], new int [size], new int [size], new int [size], new int [size], new int [size],
+				new StringDictionary(), new StringDictionary(), new StringDictionary(),
+				new StringDictionary(), new StringDictionary(), new StringDictionary());
+	}
+
+	private RecordColumns (int size, String [] lastNames, String [] firstNames, char [] initials, double [] latitudes, double [] longitudes,
+			int [] cities, int [] states, int [] countries, int [] zips, int [] businesses, int [] types,
+			StringDictionary cityValues, StringDictionary stateValues, StringDictionary countryValues,
+			StringDictionary zipValues, StringDictionary businessValues, StringDictionary typeValues) {
+		this.size = size;
+		this.lastNames = lastNames;
+		this.firstNames = firstNames;
+		this.initials = initials;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.cities = cities;
+		this.states = states;
+		this.countries = countries;
+		this.zips = zips;
+		this.businesses = businesses;
+		this.types = types;
+		this.cityValues = cityValues;
+		this.stateValues = stateValues;
+		this.countryValues = countryValues;
+		this.zipValues = zipValues;
+		this.businessValues = businessValues;
+		this.typeValues = typeValues;
+	}
+
+	/* Builds the columns for the list of records, the position of each record in the list is its row number.
+	 * The names go through a pool of canonical values, so the rows with equal names share one String, and the rows
+	 * with equal dictionary encoded values share one code. The statistics of what the columns share are added to
+	 * the metrics of the program.
+	 * @param records list of records to be stored
+	 * @return columns with the data of the records
+	 */
+	public static RecordColumns build (List<Record> records) {
+		RecordColumns columns = new RecordColumns(records.size());
+		StringPool pool = new StringPool();
+		for (int row = 0; row < records.size(); row++) {
+			Record r = records.get(row);
+			Name name = r.getName();
+			Location location = r.getLocation();
+			columns.lastNames[row] = pool.intern(name.getLastName());
+			columns.firstNames[row] = pool.intern(name.getFirstName());
+			columns.initials[row] = name.getMiddleInitial();
+			columns.latitudes[row] = location.getLatitude();
+			columns.longitudes[row] = location.getLongitude();
+			columns.cities[row] = columns.cityValues.encode(location.getCity());
+			columns.states[row] = columns.stateValues.encode(location.getState());
+			columns.countries[row] = columns.countryValues.encode(location.getCountry());
+			columns.zips[row] = columns.zipValues.encode(location.getZip());
+			columns.businesses[row] = columns.businessValues.encode(r.getBusiness());
+			columns.types[row] = columns.typeValues.encode(r.getType());
+		}
+		columns.countShared(pool);
+		Metrics.global().interned(pool);
+
+		columns.foldKeys();
+		return columns;
+	}
+
+	/* Merges the rows of two columns into new columns without materializing the records.
+	 * The values of the first columns keep their codes, the new values of the second columns are added to copies of its dictionaries.
+	 * @param a first columns
+	 * @param aRows row of the merged columns of each row of the first columns
+	 * @param b second columns
+	 * @param bRows row of the merged columns of each row of the second columns, the rows of both together are all the merged rows
+	 * @return columns with the rows of both columns
+	 */
+	static RecordColumns merge (RecordColumns a, int [] aRows, RecordColumns b, int [] bRows) {
+		int size = a.size + b.size;
+		RecordColumns columns = new RecordColumns(size, new String [size], new String [size], new char [size], new double [size], new double [size],
+				new int [size], new int [size], new int [size], new int [size], new int [size], new int [size],
+				a.cityValues.copy(), a.stateValues.copy(), a.countryValues.copy(),
+				a.zipValues.copy(), a.businessValues.copy(), a.typeValues.copy());
+		columns.place(a, aRows, null);
+
+		//the codes of the second columns are translated to the codes of the merged dictionaries
+		StringDictionary [] values = b.dictionaries();
+		StringDictionary [] merged = columns.dictionaries();
+		int [][] codes = new int [values.length][];
+		for (int i = 0; i < values.length; i++) {
+			codes[i] = new int [values[i].size()];
+			for (int code = 0; code < codes[i].length; code++)
+				codes[i][code] = merged[i].encode(values[i].decode(code));
+		}
+		columns.place(b, bRows, codes);
+
+		columns.foldKeys();
+		return columns;
+	}
+
+	/* Writes the columns and the dictionaries
+	 * @param out stream to write to
+	 * @throws IOException when the columns cannot be written
+	 */
+	void write (DataOutputStream out) throws IOException {
+		out.writeInt(size);
+		Snapshot.writeStrings(out, lastNames);
+		Snapshot.writeStrings(out, firstNames);
+		Snapshot.writeChars(out, initials);
+		Snapshot.writeDoubles(out, latitudes);
+		Snapshot.writeDoubles(out, longitudes);
+		for (int [] column : new int [][] {cities, states, countries, zips, businesses, types})
+			Snapshot.writeInts(out, column);
+		for (StringDictionary values : new StringDictionary [] {cityValues, stateValues, countryValues, zipValues, businessValues, typeValues})
+			values.write(out);
+	}
+
+	/* Reads the columns written by write(). The names are shared through a pool of canonical values, as in build(),
+	 * and the statistics of the pool are added to the metrics of the program.
+	 * @param in buffer to read from
+	 * @return columns with the same data
+	 * @throws IllegalArgumentException when the buffer does not contain valid columns
+	 */
+	static RecordColumns read (ByteBuffer in) throws IllegalArgumentException {
+		int size = in.getInt();
+		String [] lastNames = Snapshot.readStrings(in);
+		String [] firstNames = Snapshot.readStrings(in);
+		char [] initials = Snapshot.readChars(in);
+		double [] latitudes = Snapshot.readDoubles(in);
+		double [] longitudes = Snapshot.readDoubles(in);
+		int [][] codes = new int [6][];
+		for (int i = 0; i < codes.length; i++)
+			codes[i] = Snapshot.readInts(in);
+		StringDictionary [] values = new StringDictionary [6];
+		for (int i = 0; i < values.length; i++)
+			values[i] = StringDictionary.read(in);
+		//the columns have one value per row and the codes are codes of their dictionaries
+		for (int length : new int [] {lastNames.length, firstNames.length, initials.length, latitudes.length, longitudes.length}) {
+			if (length != size)
+				throw new IllegalArgumentException("the columns do not have the same length");
+		}
+		for (int i = 0; i < codes.length; i++) {
+			if (codes[i].length != size)
+				throw new IllegalArgumentException("the columns do not have the same length");
+			for (int code : codes[i]) {
+				if (code < -1 || code >= values[i].size())
+					throw new IllegalArgumentException("invalid code " + code);
+			}
+		}
+		StringPool pool = new StringPool();
+		for (int row = 0; row < size; row++) {
+			lastNames[row] = pool.intern(lastNames[row]);
+			firstNames[row] = pool.intern(firstNames[row]);
+		}
+		RecordColumns columns = new RecordColumns(size, lastNames, firstNames, initials, latitudes, longitudes,
+				codes[0], codes[1], codes[2], codes[3], codes[4], codes[5],
+				values[0], values[1], values[2], values[3], values[4], values[5]);
+		columns.countShared(pool);
+		Metrics.global().interned(pool);
+		columns.foldKeys();
+		return columns;
+	}
+
+	/* Returns the number of rows
+	 * @return the number of rows
+	 */
+	public int size () {
+		return size;
+	}
+
+	/* Materializes the record stored in the specified row
+	 * @param row row number
+	 * @return a new Record object with the data of the row
+	 */
+	public Record get (int row) {
+		Name name = new Name(lastNames[row], firstNames[row], initials[row]);
+		Location location = new Location(cityValues.decode(cities[row]), stateValues.decode(states[row]),
+				countryValues.decode(countries[row]), zipValues.decode(zips[row]), latitudes[row], longitudes[row], null);
+		return new Record(name, businessValues.decode(businesses[row]), location, typeValues.decode(types[row]));
+	}
+
+	/* Writes the record stored in the specified row without materializing it
+	 * @param out writer of the record
+	 * @param row row number
+	 * @throws IOException when the record cannot be written
+	 */
+	void writeRow (ResultWriter out, int row) throws IOException {
+		out.writeRecord(lastNames[row], firstNames[row], initials[row], businessValues.decode(businesses[row]),
+				cityValues.decode(cities[row]), stateValues.decode(states[row]), countryValues.decode(countries[row]),
+				zipValues.decode(zips[row]));
+	}
+
+	/* Returns all the rows as a list stored in these columns, the records are materialized when they are read
+	 * @return list of the records in the order of the rows
+	 */
+	public RecordList toRecordList () {
+		return new RecordList(this, null);
+	}
+
+	/* Returns the dictionary encoded columns in the order of Aggregates.FIELDS: city, zip, state, country, business and type
+	 * @return the columns of codes
+	 */
+	int [][] codeColumns () {
+		return new int [][] {cities, zips, states, countries, businesses, types};
+	}
+
+	/* Returns the dictionaries of the columns returned by codeColumns(), in the same order
+	 * @return the dictionaries
+	 */
+	StringDictionary [] dictionaries () {
+		return new StringDictionary [] {cityValues, zipValues, stateValues, countryValues, businessValues, typeValues};
+	}
+
+	/* Returns the rows whose city or zip code contains the keyword (case insensitive),
+	 * the same rows for which Location.contains() is true.
+	 * Each distinct city and zip code is checked once, then the dense code columns are scanned.
+	 * @param foldedKeyword location or location substring that we are looking for, already case folded
+	 * @return increasing row numbers of the matching rows
+	 */
+	public int [] matchCity (String foldedKeyword) {
+		return matchCity(foldedKeyword, Integer.MAX_VALUE);
+	}
+
+	/* Returns the first rows whose city or zip code contains the keyword (case insensitive),
+	 * the scan of the rows stops as soon as enough of them are found.
+	 * @param foldedKeyword location or location substring that we are looking for, already case folded
+	 * @param limit maximum number of rows to return
+	 * @return increasing row numbers of at most limit matching rows
+	 */
+	public int [] matchCity (String foldedKeyword, int limit) {
+		boolean [] cityHits = new boolean [cityKeys.length];
+		boolean [] zipHits = new boolean [zipKeys.length];
+		int [] cityCodes = cityText.match(foldedKeyword);
+		int [] zipCodes = zipText.match(foldedKeyword);
+		if (cityCodes.length == 0 && zipCodes.length == 0)
+			return new int [0];
+		for (int code : cityCodes)
+			cityHits[code] = true;
+		for (int code : zipCodes)
+			zipHits[code] = true;
+
+		int [] matches = new int [16];
+		int count = 0;
+		for (int row = 0; row < size && count < limit; row++) {
+			int city = cities[row];
+			int zip = zips[row];
+			if ((city >= 0 && cityHits[city]) || (zip >= 0 && zipHits[zip])) {
+				if (count == matches.length)
+					matches = Arrays.copyOf(matches, count * 2);
+				matches[count++] = row;
+			}
+		}
+		return Arrays.copyOf(matches, count);
+	}
+
+	/* Returns the rows whose last name or first name contains the keyword (case insensitive),
+	 * the same rows for which Name.contains() is true.
+	 * The names are packed in a byte array the first time they are scanned (see PackedText).
+	 * @param foldedKeyword name or name substring that we are looking for, already case folded
+	 * @return increasing row numbers of the matching rows
+	 */
+	public int [] matchName (String foldedKeyword) {
+		return names().match(foldedKeyword);
+	}
+
+	/* Returns the candidate rows whose last name or first name contains the keyword (case insensitive),
+	 * the same rows for which Name.contains() is true. The check of the candidates stops as soon as enough of them are found.
+	 * @param candidates increasing row numbers of the rows to check, the array is overwritten
+	 * @param foldedKeyword name or name substring that we are looking for, already case folded
+	 * @param limit maximum number of rows to return
+	 * @return increasing row numbers of at most limit matching rows
+	 */
+	public int [] filterName (int [] candidates, String foldedKeyword, int limit) {
+		PackedText text = names();
+		byte [] keyword = foldedKeyword.getBytes(StandardCharsets.UTF_8);
+		int count = 0;
+		for (int i = 0; i < candidates.length && count < limit; i++) {
+			if (text.contains(candidates[i], keyword))
+				candidates[count++] = candidates[i];
+		}
+		return Arrays.copyOf(candidates, count);
+	}
+
+	/*
+	 * Helper method that returns the packed names, packing them the first time they are needed.
+	 */
+	private PackedText names () {
+		PackedText text = nameText;
+		if (text == null) {
+			synchronized (this) {
+				text = nameText;
+				if (text == null)
+					nameText = text = new PackedText(lastNames, firstNames);
+			}
+		}
+		return text;
+	}
+
+	/* Returns the rows whose registration type is the type (case insensitive)
+	 * @param foldedType the registration type, already case folded
+	 * @return increasing row numbers of the matching rows
+	 */
+	public int [] matchType (String foldedType) {
+		return rows(types, equalValues(typeValues, foldedType));
+	}
+
+	/* Returns the rows whose state is the state (case insensitive)
+	 * @param foldedState the state, already case folded
+	 * @return increasing row numbers of the matching rows
+	 */
+	public int [] matchState (String foldedState) {
+		return rows(states, equalValues(stateValues, foldedState));
+	}
+
+	/* Returns the rows whose country is the country (case insensitive)
+	 * @param foldedCountry the country, already case folded
+	 * @return increasing row numbers of the matching rows
+	 */
+	public int [] matchCountry (String foldedCountry) {
+		return rows(countries, equalValues(countryValues, foldedCountry));
+	}
+
+	/* Returns the rows whose business contains the keyword (case insensitive)
+	 * @param foldedKeyword business or business substring, already case folded
+	 * @return increasing row numbers of the matching rows
+	 */
+	public int [] matchBusiness (String foldedKeyword) {
+		boolean [] hits = new boolean [businessValues.size()];
+		for (int code = 0; code < hits.length; code++)
+			hits[code] = CaseFold.fold(businessValues.decode(code)).contains(foldedKeyword);
+		return rows(businesses, hits);
+	}
+
+	/*
+	 * Helper method that marks the codes of the values that are equal to the folded value.
+	 */
+	private static boolean [] equalValues (StringDictionary values, String folded) {
+		boolean [] hits = new boolean [values.size()];
+		for (int code = 0; code < hits.length; code++)
+			hits[code] = CaseFold.fold(values.decode(code)).equals(folded);
+		return hits;
+	}
+
+	/*
+	 * Helper method that returns the rows whose code in the column is marked.
+	 */
+	private int [] rows (int [] column, boolean [] hits) {
+		int [] matches = new int [16];
+		int count = 0;
+		for (int row = 0; row < size; row++) {
+			int code = column[row];
+			if (code >= 0 && hits[code]) {
+				if (count == matches.length)
+					matches = Arrays.copyOf(matches, count * 2);
+				matches[count++] = row;
+			}
+		}
+		return Arrays.copyOf(matches, count);
+	}
+
+	/*
+	 * Helper method that copies the rows of the columns to the specified rows of these columns, translating the
+	 * codes of the dictionary encoded columns when the dictionaries differ (codes is null when they do not).
+	 */
+	private void place (RecordColumns source, int [] rows, int [][] codes) {
+		int [][] from = source.codeColumns();
+		int [][] to = codeColumns();
+		for (int r = 0; r < source.size; r++) {
+			int row = rows[r];
+			lastNames[row] = source.lastNames[r];
+			firstNames[row] = source.firstNames[r];
+			initials[row] = source.initials[r];
+			latitudes[row] = source.latitudes[r];
+			longitudes[row] = source.longitudes[r];
+			for (int i = 0; i < from.length; i++) {
+				int code = from[i][r];
+				to[i][row] = (codes == null || code < 0) ? code : codes[i][code];
+			}
+		}
+	}
+
+	/*
+	 * Helper method that counts the rows sharing each value of the dictionaries, once per code instead of once per row.
+	 */
+	private void countShared (StringPool pool) {
+		int [][] codes = codeColumns();
+		StringDictionary [] dictionaries = dictionaries();
+		for (int i = 0; i < codes.length; i++) {
+			int [] rows = new int [dictionaries[i].size()];
+			for (int code : codes[i]) {
+				if (code >= 0)
+					rows[code]++;
+			}
+			for (int code = 0; code < rows.length; code++)
+				pool.shared(dictionaries[i].decode(code), rows[code]);
+		}
+	}
+
+	/*
+	 * Helper method that folds each distinct city and zip code once and packs them for scanning.
+	 */
+	private void foldKeys () {
+		cityKeys = new String [cityValues.size()];
+		for (int code = 0; code < cityKeys.length; code++)
+			cityKeys[code] = CaseFold.fold(cityValues.decode(code));
+		zipKeys = new String [zipValues.size()];
+		for (int code = 0; code < zipKeys.length; code++)
+			zipKeys[code] = CaseFold.fold(zipValues.decode(code));
+		cityText = new PackedText(cityKeys);
+		zipText = new PackedText(zipKeys);
+	}
+
+	/* Returns the number of distinct cities
+	 * @return the number of distinct cities
+	 */
+	public int cityCount () {
+		return cityValues.size();
+	}
+
+	/* Returns the number of distinct businesses
+	 * @return the number of distinct businesses
+	 */
+	public int businessCount () {
+		return businessValues.size();
+	}
+}
@@ -1,13 +1,337 @@
 package project3;
 
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.lang.String;
 
 @SuppressWarnings("serial")
 public class RecordList extends ArrayList<Record>{
 	
+	//index of the names, valid only while the list is not modified after buildIndexes() 
+	private transient NameIndex nameIndex; 
+	private transient ZipIndex zipIndex; 
+	private transient GeoIndex geoIndex; 
+	private transient RecordColumns columns; 
+	private transient Aggregates aggregates; 
+	
+	//index for the fuzzy name queries, built when it is first needed and then valid as long as the other indexes 
+	private transient volatile FuzzyIndex fuzzyIndex; 
+	private transient volatile CompletionIndex completionIndex; 
+	private transient int indexedVersion; 
+	
+	//number of records replaced by set(), which is a change of the content that does not change modCount 
+	private transient int replaced; 
+	
+	//cache of the query results, null if the results are not cached 
+	private transient QueryCache cache; 
+	
+	//the columns when the records are stored in columns (see buildIndexes()) and the rows of the list, null for all the rows, 
+	//the ArrayList itself is then empty and a new Record object is created whenever a record is read 
+	private transient RecordColumns store; 
+	private transient int [] rows; 
+	
 	public RecordList () {}
+	
+	/* Constructs a list containing the specified records, in the same order. 
+	 * The copy of a list stored in columns is stored in the same columns. 
+	 * @param records records to be placed in the list 
+	 */
+	public RecordList (Collection<Record> records) {
+		super(isStored(records) ? Collections.<Record>emptyList() : records); 
+		if (isStored(records)) {
+			store = ((RecordList) records).store; 
+			rows = ((RecordList) records).rows; 
+		}
+	}
+	
+	/* Constructs a list of rows of the columns, the records are created when they are read 
+	 * @param store the columns in which the records are stored 
+	 * @param rows the rows of the list in the order of the list, or null for all the rows 
+	 */
+	RecordList (RecordColumns store, int [] rows) {
+		this.store = store; 
+		this.rows = rows; 
+	}
+		
+	/* Sorts the list and builds the indexes used by the queries. 
+	 * After the list is sorted the position of each record is its rank in the Record order, 
+	 * so the records found by scanning the list or by following the indexes (which list the 
+	 * positions in increasing order) are already sorted and the queries do not need to sort them. 
+	 * The indexes are used until the list is modified, after that the queries scan and sort 
+	 * until this method is called again. 
+	 * The counts of the records by field (see countBy()) are computed in the same pass. 
+	 * Once the indexes are built the records are stored only in columns (see RecordColumns), which take a 
+	 * fraction of the memory of the Record objects: reading a record creates a new Record object, and the 
+	 * results of the indexed queries are lists of rows of the same columns. Modifying the list creates 
+	 * the Record objects again. 
+	 */
+	public void buildIndexes () {
+			long start = System.nanoTime(); 
+		Collections.sort(this); 
+		long sorted = System.nanoTime(); 
+		nameIndex = NameIndex.build(this); 
+		zipIndex = ZipIndex.build(this); 
+		geoIndex = GeoIndex.build(this); 
+		columns = RecordColumns.build(this); 
+		aggregates = Aggregates.build(this); 
+		//from now on the records are stored only in the columns 
+		super.clear(); 
+		super.trimToSize(); 
+		store = columns; 
+		rows = null; 
+		Metrics.global().phase(Metrics.SORT, sorted - start); 
+		Metrics.global().phase(Metrics.INDEX, System.nanoTime() - sorted); 
+		fuzzyIndex = null; 
+		completionIndex = null; 
+		indexedVersion = version(); 
+	}
+	
+	/* Installs indexes that were built for the current, sorted, content of the list 
+	 * (for example read from a snapshot), instead of building them. 
+	 * The records are stored only in the columns, as after buildIndexes(), and counted without materializing them. 
+	 */
+	void setIndexes (NameIndex nameIndex, ZipIndex zipIndex, GeoIndex geoIndex, RecordColumns columns) {
+		setIndexes(nameIndex, zipIndex, geoIndex, columns, Aggregates.build(columns)); 
+	}
+	
+	/*
+	 * Helper method that installs indexes and counts built for the current, sorted, content of the list. 
+	 */
+	private void setIndexes (NameIndex nameIndex, ZipIndex zipIndex, GeoIndex geoIndex, RecordColumns columns, Aggregates counts) {
+			if (store == null) {
+			super.clear(); 
+			super.trimToSize(); 
+		}
+		store = columns; 
+		rows = null; 
+		this.nameIndex = nameIndex; 
+		this.zipIndex = zipIndex; 
+		this.geoIndex = geoIndex; 
+		this.columns = columns; 
+		this.aggregates = counts; 
+		this.fuzzyIndex = null; 
+		this.completionIndex = null; 
+		indexedVersion = version(); 
+	}
+	
+	/* Removes the duplicate records: the records that are equal (see Record.equals()) to an earlier record 
+	 * of the list and have the same registration type (case insensitive). The first of the equal records is kept 
+	 * and the order of the remaining records does not change. 
+	 * The records are found in linear time with an open addressing hash table of positions in the list 
+	 * that uses the cached hash codes of the records. 
+	 * The number of removed records is added to the metrics of the program. 
+	 * @return the number of removed records 
+	 */
+	public int removeDuplicates () {
+		int n = size(); 
+		int capacity = Integer.highestOneBit(Math.max(n, 1) * 2 - 1) << 1; 
+		int mask = capacity - 1; 
+		//positions of the kept records plus 1, 0 for an empty slot 
+		int [] table = new int [capacity]; 
+		int kept = 0; 
+		for (int i = 0; i < n; i++) {
+			Record r = get(i); 
+			//spread the upper bits, the hash codes of similar names differ mostly in the low bits 
+			int h = r.hashCode(); 
+			int slot = (h ^ (h >>> 16)) & mask; 
+			boolean duplicate = false; 
+			while (table[slot] != 0) {
+				Record other = get(table[slot] - 1); 
+				if (other.hashCode() == h && isDuplicate(other, r)) {
+					duplicate = true; 
+					break; 
+				}
+				slot = (slot + 1) & mask; 
+			}
+			if (duplicate)
+				continue; 
+			set(kept, r); 
+			table[slot] = ++kept; 
+		}
+		if (kept < n)
+			subList(kept, n).clear(); 
+		Metrics.global().collapsed(n - kept); 
+		return n - kept; 
+	}
+	
+	/* Returns a new indexed list with the records of this list and the added records, without the duplicates 
+	 * (see removeDuplicates()). The result is the list obtained by adding the records to a copy of this list, 
+	 * removing the duplicates and building the indexes, but the records of an indexed list are not materialized: 
+	 * only the added records are sorted and indexed, then their columns, indexes and counts are merged 
+	 * with the ones of this list in linear time. 
+	 * @param added records to be added, in any order, the list is sorted and its duplicates are removed 
+	 * @return the indexed list with the records of both lists 
+	 */
+	RecordList merge (RecordList added) {
+		if (!isIndexed()) {
+			RecordList records = new RecordList(this); 
+			records.addAll(added); 
+			records.removeDuplicates(); 
+			records.buildIndexes(); 
+			return records; 
+		}
+		added.removeDuplicates(); 
+		Collections.sort(added); 
+	
+		//each added record goes after the records of this list that are smaller or equal, as with a stable sort, 
+		//and only the equal ones can be its duplicates 
+		int [] at = new int [added.size()]; 
+		int kept = 0; 
+		for (int i = 0; i < added.size(); i++) {
+			Record r = added.get(i); 
+			int pos = upperBound(r); 
+			boolean duplicate = false; 
+			for (int k = pos - 1; k >= 0 && !duplicate; k--) {
+				Record other = get(k); 
+				if (other.compareTo(r) != 0) 
+					break; 
+				duplicate = isDuplicate(other, r); 
+			}
+			if (duplicate) 
+				continue; 
+			added.set(kept, r); 
+			at[kept++] = pos; 
+		}
+		Metrics.global().collapsed(added.size() - kept); 
+		added.subList(kept, added.size()).clear(); 
+	
+		//the positions of the records of both lists in the merged list 
+		int [] ids = new int [size()]; 
+		for (int i = 0, j = 0; i < ids.length; i++) {
+			while (j < kept && at[j] <= i) 
+				j++; 
+			ids[i] = i + j; 
+		}
+		int [] addedIds = new int [kept]; 
+		for (int j = 0; j < kept; j++) 
+			addedIds[j] = at[j] + j; 
+	
+		RecordColumns merged = RecordColumns.merge(columns, ids, RecordColumns.build(added), addedIds); 
+		Aggregates counts = aggregates.copy(); 
+		for (Record r : added) 
+			counts.add(r); 
+		RecordList records = new RecordList(merged, null); 
+		records.setIndexes(NameIndex.merge(nameIndex, ids, NameIndex.build(added), addedIds), 
+				ZipIndex.merge(zipIndex, ids, ZipIndex.build(added), addedIds), 
+				GeoIndex.merge(geoIndex, ids, GeoIndex.build(added), addedIds), merged, counts); 
+		return records; 
+	}
+	
+	NameIndex getNameIndex () {
+		return isIndexed() ? nameIndex : null; 
+	}
+	
+	ZipIndex getZipIndex () {
+		return isIndexed() ? zipIndex : null; 
+	}
+	
+	GeoIndex getGeoIndex () {
+		return isIndexed() ? geoIndex : null; 
+	}
+	
+	/* Returns the counts used by countBy(): the counts of an indexed list, otherwise counts computed for this call 
+	 * @return the counts of the records by field 
+	 */
+	Aggregates counts () {
+		return isIndexed() ? aggregates : Aggregates.build(this); 
+	}
+	
+	/* Returns the index used by complete(): the index of an indexed list, otherwise an index built for this call 
+	 * @return the completion index of the records 
+	 */
+	CompletionIndex completions () {
+		return isIndexed() ? getCompletionIndex() : CompletionIndex.build(this); 
+	}
+		
+	/*
+	 * Helper method that returns the fuzzy index of the current content, building it if needed. 
+	 */
+	private FuzzyIndex getFuzzyIndex () {
+		FuzzyIndex index = fuzzyIndex; 
+		if (index == null) {
+			synchronized (this) {
+				index = fuzzyIndex; 
+				if (index == null) 
+					fuzzyIndex = index = FuzzyIndex.build(this); 
+			}
+		}
+		return index; 
+	}
+	
+	/*
+	 * Helper method that returns the completion index of the current content, building it if needed. 
+	 */
+	private CompletionIndex getCompletionIndex () {
+		CompletionIndex index = completionIndex; 
+		if (index == null) {
+			synchronized (this) {
+				index = completionIndex; 
+				if (index == null) 
+					completionIndex = index = CompletionIndex.build(this); 
+			}
+		}
+		return index; 
+	}
+	
+	/* Returns the columns in which buildIndexes() stored the records 
+	 * @return the columns, or null if the list is not indexed 
+	 */
+	public RecordColumns getColumns () {
+		return isIndexed() ? columns : null; 
+	}
+	
+	/* Writes the record at the position, straight from the columns when the list is stored in columns 
+	 * @param out writer of the record 
+	 * @param index position of the record 
+	 * @throws IOException when the record cannot be written 
+	 */
+	void writeRecord (ResultWriter out, int index) throws IOException {
+		if (store == null) {
+			out.writeRecord(get(index)); 
+			return; 
+		}
+		Objects.checkIndex(index, size()); 
+		store.writeRow(out, rows == null ? index : rows[index]); 
+	}
+	
+	/* Sets the cache used for the results  of getByName(), getByCity() and getByZip(). 
+	 * The cached results are discarded whenever the list is modified. 
+	 * @param cache the cache to use, or null to stop caching 
+	 */
+	public void setCache (QueryCache cache) {
+		this.cache = cache; 
+	}
+	
+	/* Returns the cache used for the query results 
+	 * @return the cache, or null if the results are not cached 
+	 */
+	public QueryCache getCache () {
+		return cache; 
+	}
+	
+	/* Determines if the list is sorted and the indexes describe its current content 
+	 * @return true if the indexes can be used by the queries 
+	 */
+	public boolean isIndexed () {
+		return nameIndex != null && indexedVersion == version(); 
+	}
 
 	/* Returns a list of records for which the keyword is a substring of person's last name or first name. 
 	 * The method should be case insensitive. 
@@ -22,19 +346,34 @@ public class RecordList extends ArrayList<Record>{
 		if(keyword == null || keyword.isBlank() || keyword.isEmpty()) {
 			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
 		}
+		String folded = CaseFold.fold(keyword); 
+		RecordList cached = fromCache("name", folded); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached); 
+		
 		RecordList list = new RecordList();
-		for (Record r : this ) {
+		int [] candidates = isIndexed() ? nameIndex.candidates(folded) : null; 
+		if (candidates != null) {
+			//only the records that contain all the trigrams of the keyword need to be checked 
+			list = select(columns.filterName(candidates, folded, Integer.MAX_VALUE)); 
+		}
+		else if (isIndexed()) {
+			//keywords shorter than a trigram are searched in the packed names 
+			list = select(columns.matchName(folded)); 
+		}
+		else for (Record r : this ) {
 			Name name = r.getName();
 			if (name == null) 
 				continue; 
-			if (name.contains( keyword ) ) 
+			if (name.containsFolded( folded ) ) 
 				list.add(r); 
 		}
 		if (list.isEmpty()) {
-			return null;
+			return toCache("name", folded, null);
 		}
-		Collections.sort(list);
-		return list;		
+		if (!isIndexed()) 
+			Collections.sort(list);
+		return toCache("name", folded, list);		
 	}
 	
 	/* Returns a list of records for which the keyword is a substring of the city at which the tax preparer is located. 
@@ -50,19 +389,29 @@ public class RecordList extends ArrayList<Record>{
 		if(keyword == null || keyword.isBlank() || keyword.isEmpty()) {
 			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
 		}
+		String folded = CaseFold.fold(keyword); 
+		RecordList cached = fromCache("city", folded); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached); 
+		
 		RecordList list = new RecordList();
-		for (Record r : this ) {
+		if (isIndexed()) {
+			//each distinct city is matched once, then the dense city column is scanned 
+			list = select(columns.matchCity(folded)); 
+		}
+		else for (Record r : this ) {
 			Location city = r.getLocation();
 			if (city == null) 
 				continue; 
-			if (city.contains( keyword ) ) 
+			if (city.containsFolded( folded ) ) 
 				list.add(r); 
 		}
 		if (list.isEmpty()) {
-			return null;
+			return toCache("city", folded, null);
 		}		
-		Collections.sort(list);
-		return list;
+		if (!isIndexed()) 
+			Collections.sort(list);
+		return toCache("city", folded, list);
 	}
 	
 	/* Returns a list of records for which the zip-code (if specified) matches the zip argument exactly. 
@@ -80,8 +429,17 @@ public class RecordList extends ArrayList<Record>{
 			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
 		}
 				
+		RecordList cached = fromCache("zip", zip); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached); 
+		
 		RecordList list = new RecordList();
-		for (Record r : this ) {
+		int [] ids = isIndexed() ? zipIndex.lookup(zip, this) : null; 
+		if (ids != null) {
+			//five digit zip codes are looked up directly 
+			list = select(ids); 
+		}
+		else for (Record r : this ) {
 			Location zipCode = r.getLocation();
 			if (zipCode == null) 
 				continue; 
@@ -90,11 +448,657 @@ public class RecordList extends ArrayList<Record>{
 				list.add(r); 
 		}
 		if (list.isEmpty()) {
-			return null;
+			return toCache("zip", zip, null);
+		}
+		if (!isIndexed()) 
+			Collections.sort(list);
+		return toCache("zip", zip, list);
+	}
+	
+	/* Returns the first k records (in the order of the records) of the result of getByName(). 
+	 * When the list is indexed it is walked in order and the walk stops after k matches, 
+	 * otherwise only the k smallest matches are kept while the list is scanned. 
+	 * Either way the matches after the first k are neither stored nor sorted. 
+	 * 
+	 * @param keyword substring of a person's last name or first name
+	 * @param k maximum number of records to return 
+	 * @throws IllegalArgumentException if the keyword is a null argument or an empty string, or k is not positive 
+	 * @return the first k records for which the keyword is a substring of a person's last name or first name, or null if there are no Record objects matching the keyword
+	 */
+	public RecordList getTopByName (String keyword, int k) throws IllegalArgumentException{
+		if(keyword == null || keyword.isBlank() || keyword.isEmpty() || k < 1) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		String folded = CaseFold.fold(keyword); 
+		RecordList cached = fromCache("name", folded); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached.subList(0, Math.min(k, cached.size()))); 
+		
+		TopK top = new TopK(k); 
+		int [] candidates = isIndexed() ? nameIndex.candidates(folded) : null; 
+		if (candidates != null) {
+			for (int id : columns.filterName(candidates, folded, k)) 
+				top.add(id); 
+		}
+		else if (isIndexed()) {
+			int [] ids = columns.matchName(folded); 
+			for (int i = 0; i < ids.length && !top.isFull(); i++) 
+				top.add(ids[i]); 
+		}
+		else for (int id = 0; id < size() && !top.isFull(); id++) {
+			Name name = get(id).getName();
+			if (name != null && name.containsFolded( folded ) ) 
+				top.add(id); 
+		}
+		return top.result(); 
+	}
+	
+	/* Returns the first k records (in the order of the records) of the result of getByCity(), 
+	 * without storing or sorting the matches after the first k (see getTopByName()). 
+	 * 
+	 * @param keyword substring of a taxpayer's city
+	 * @param k maximum number of records to return 
+	 * @throws IllegalArgumentException if the keyword is a null argument or an empty string, or k is not positive 
+	 * @return the first k records for which the keyword is a substring of the city at which the tax preparer is located, or null if there are no Record objects matching the keyword
+	 */
+	public RecordList getTopByCity (String keyword, int k) throws IllegalArgumentException{
+		if(keyword == null || keyword.isBlank() || keyword.isEmpty() || k < 1) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		String folded = CaseFold.fold(keyword); 
+		RecordList cached = fromCache("city", folded); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached.subList(0, Math.min(k, cached.size()))); 
+		
+		TopK top = new TopK(k); 
+		if (isIndexed()) {
+			for (int id : columns.matchCity(folded, k)) 
+				top.add(id); 
+		}
+		else for (int id = 0; id < size(); id++) {
+			Location city = get(id).getLocation();
+			if (city != null && city.containsFolded( folded ) ) 
+				top.add(id); 
+		}
+		return top.result(); 
+	}
+	
+	/* Returns the first k records (in the order of the records) of the result of getByZip(), 
+	 * without storing or sorting the matches after the first k (see getTopByName()). 
+	 * 
+	 * @param zip zip code
+	 * @param k maximum number of records to return 
+	 * @throws IllegalArgumentException if zip is a null argument or invalid (i.e., contains any characters other than digits, or contains fewer or more than five characters), or k is not positive 
+	 * @return the first k records for which the zip-code (if specified) matches the zip argument exactly, or null if there are no Record objects matching the zip exactly
+	 */
+	public RecordList getTopByZip (String zip, int k) throws IllegalArgumentException{
+		if(zip == null || zip.isBlank() || zip.isEmpty() || zip.length() != 5 || zip.matches(".*[a-z].*") || k < 1) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		RecordList cached = fromCache("zip", zip); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached.subList(0, Math.min(k, cached.size()))); 
+		
+		TopK top = new TopK(k); 
+		int [] ids = isIndexed() ? zipIndex.lookup(zip, this) : null; 
+		if (ids != null) {
+			for (int i = 0; i < ids.length && !top.isFull(); i++) 
+				top.add(ids[i]); 
+		}
+		else for (int id = 0; id < size() && !top.isFull(); id++) {
+			Location zipCode = get(id).getLocation();
+			if (zipCode != null && zipCode.changeZip().contains( zip ) ) 
+				top.add(id); 
+		}
+		return top.result(); 
+	}
+	
+	/* Returns a list of records for which the last name, the first name, or one of the words of a name 
+	 * is within maxEdits inserted, deleted or replaced characters of the keyword (for example "smyth" matches "SMITH" with one edit). 
+	 * The method is case insensitive. 
+	 * When the list is indexed the names are searched with a FuzzyIndex (built by the first fuzzy query), 
+	 * otherwise every name is compared with the keyword. 
+	 * It should throw and instance of IllegalArgumentException exception if called with null argument or with an empty string, 
+	 * or if maxEdits is not between 0 and FuzzyIndex.MAX_EDITS. 
+	 * It should return null if there are no Record objects matching the keyword. 
+	 * 
+	 * @param keyword approximate last name or first name 
+	 * @param maxEdits largest number of edits 
+	 * @throws IllegalArgumentException if the keyword is a null argument or an empty string, or maxEdits is out of range 
+	 * @return a sorted list of the matching records, or null if there are no Record objects matching the keyword 
+	 */
+	public RecordList getByFuzzyName (String keyword, int maxEdits) throws IllegalArgumentException{
+		if(keyword == null || keyword.isBlank() || keyword.isEmpty() || maxEdits < 0 || maxEdits > FuzzyIndex.MAX_EDITS) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		String folded = CaseFold.fold(keyword); 
+		RecordList cached = fromCache("fuzzy", maxEdits + " " + folded); 
+		if (cached != null) 
+			return QueryCache.isNoMatches(cached) ? null : new RecordList(cached); 
+		
+		RecordList list = new RecordList(); 
+		if (isIndexed()) {
+			list = select(getFuzzyIndex().lookup(folded, maxEdits)); 
+		}
+		else {
+			for (Record r : this ) {
+				Name name = r.getName(); 
+				if (name != null && FuzzyIndex.matches(name, folded, maxEdits)) 
+					list.add(r); 
+			}
+			Collections.sort(list); 
+		}
+		return toCache("fuzzy", maxEdits + " " + folded, list.isEmpty() ? null : list); 
+	}
+	
+	/* Returns the most frequent distinct last names and cities that start with the prefix, with their numbers of records. 
+	 * The method is case insensitive. 
+	 * When the list is indexed the completions are found with a CompletionIndex (built by the first call), 
+	 * otherwise the index is built for this call. 
+	 * It should throw and instance of IllegalArgumentException exception if called with null argument or with an empty string, 
+	 * or if k is not positive. 
+	 * 
+	 * @param prefix beginning of a last name or a city 
+	 * @param k largest number of completions 
+	 * @throws IllegalArgumentException if the prefix is a null argument or an empty string, or k is not positive 
+	 * @return at most k completions, the most frequent first (an empty list if there are none) 
+	 */
+	public List<CompletionIndex.Completion> complete (String prefix, int k) throws IllegalArgumentException{
+		if(prefix == null || prefix.isBlank() || prefix.isEmpty() || k < 1) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
 		}
-		Collections.sort(list);
-		return list;
+		return completions().complete(CaseFold.fold(prefix), k); 
+	}
+	
+	/* Returns the values of the field with the largest numbers of records, with their numbers of records. 
+	 * The values are compared case insensitively, a value spelled in several ways is displayed with the smallest spelling in String order. 
+	 * When the list is indexed the counts computed by buildIndexes() are used, otherwise the records are counted for this call. 
+	 * It should throw and instance of IllegalArgumentException exception if the field is not one of 
+	 * city, zip, state, country, business and type, or if n is negative. 
+	 * 
+	 * @param field the field to group the records by 
+	 * @param n largest number of values 
+	 * @throws IllegalArgumentException if the field is not known or n is negative 
+	 * @return at most n values, the most frequent first (an empty list if no record has a value of the field) 
+	 */
+	public List<Aggregates.Count> countBy (String field, int n) throws IllegalArgumentException{
+		if(field == null || !Aggregates.isField(field) || n < 0) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		return counts().top(field, n); 
+	}
+	
+	/* Returns a list of records located within the radius of the point, ordered by their distance from the point 
+	 * (records at the same distance are in the order of the records). Records without coordinates are never returned. 
+	 * When the list is indexed only the records in the grid cells around the point are checked. 
+	 * It should throw and instance of IllegalArgumentException exception if the latitude is not in [-90, 90], 
+	 * the longitude is not in [-180, 180] or the radius is not a positive number. 
+	 * It should return null if there are no records within the radius. 
+	 * 
+	 * @param latitude latitude of the point in degrees 
+	 * @param longitude longitude of the point in degrees 
+	 * @param radiusKm radius in kilometers 
+	 * @throws IllegalArgumentException if the point or the radius is invalid 
+	 * @return a list of the records within the radius, closest first, or null if there are no such records 
+	 */
+	public RecordList getNear (double latitude, double longitude, double radiusKm) throws IllegalArgumentException{
+		if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180 && radiusKm > 0 && radiusKm < Double.POSITIVE_INFINITY)) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		int [] ids = isIndexed() ? geoIndex.near(latitude, longitude, radiusKm) : GeoIndex.scan(this, latitude, longitude, radiusKm); 
+		if (ids.length == 0) 
+			return null; 
+		if (isIndexed()) 
+			return select(ids); 
+		RecordList list = new RecordList(); 
+		list.ensureCapacity(ids.length); 
+		for (int id : ids) 
+			list.add(get(id)); 
+		return list; 
+	}
+	
+	
+	/* Returns the records of this indexed list with the ids, as a list stored in the same columns 
+	 * @param ids ids of records of this list, in the order of the result 
+	 * @return list of the records, which are created when they are read 
+	 */
+	RecordList select (int [] ids) {
+		return new RecordList(columns, ids); 
 	}
 	
+	/*
+	 * The methods of ArrayList that read the elements directly, overridden for the lists stored in columns. 
+	 * The methods that modify the list first store the records in the list itself (see materialize()). 
+	 */
+	
+	@Override
+	public int size () {
+		return store == null ? super.size() : rows == null ? store.size() : rows.length; 
+	}
+	
+	@Override
+	public boolean isEmpty () {
+		return size() == 0; 
+	}
+	
+	@Override
+	public Record get (int index) {
+		if (store == null) 
+			return super.get(index); 
+		Objects.checkIndex(index, size()); 
+		return store.get(rows == null ? index : rows[index]); 
+	}
+	
+	@Override
+	public Iterator<Record> iterator () {
+		return store == null ? super.iterator() : new StoredIterator(0); 
+	}
+	
+	@Override
+	public ListIterator<Record> listIterator () {
+		return listIterator(0); 
+	}
+	
+	@Override
+	public ListIterator<Record> listIterator (int index) {
+		if (store == null) 
+			return super.listIterator(index); 
+		Objects.checkIndex(index, size() + 1); 
+		return new StoredIterator(index); 
+	}
+	
+	@Override
+	public void forEach (Consumer<? super Record> action) {
+		if (store == null) {
+			super.forEach(action); 
+			return; 
+		}
+		Objects.requireNonNull(action); 
+		for (int i = 0; i < size(); i++) 
+			action.accept(get(i)); 
+	}
+	
+	@Override
+	public Spliterator<Record> spliterator () {
+		return store == null ? super.spliterator() : Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED); 
+	}
+	
+	@Override
+	public Object [] toArray () {
+		if (store == null) 
+			return super.toArray(); 
+		Object [] records = new Object [size()]; 
+		for (int i = 0; i < records.length; i++) 
+			records[i] = get(i); 
+		return records; 
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T [] toArray (T [] a) {
+		if (store == null) 
+			return super.toArray(a); 
+		Object [] records = toArray(); 
+		if (a.length < records.length) 
+			return (T []) Arrays.copyOf(records, records.length, a.getClass()); 
+		System.arraycopy(records, 0, a, 0, records.length); 
+		if (a.length > records.length) 
+			a[records.length] = null; 
+		return a; 
+	}
+	
+	@Override
+	public int indexOf (Object o) {
+		return store == null ? super.indexOf(o) : Arrays.asList(toArray()).indexOf(o); 
+	}
+	
+	@Override
+	public int lastIndexOf (Object o) {
+		return store == null ? super.lastIndexOf(o) : Arrays.asList(toArray()).lastIndexOf(o); 
+	}
+	
+	@Override
+	public boolean equals (Object o) {
+		return store == null ? super.equals(o) : Arrays.asList(toArray()).equals(o); 
+	}
+	
+	@Override
+	public int hashCode () {
+		return store == null ? super.hashCode() : Arrays.asList(toArray()).hashCode(); 
+	}
+	
+	/* Returns the records from fromIndex to toIndex - 1. 
+	 * For a list stored in columns the result is a copy of the range, stored in the same columns. 
+	 * Otherwise it is a view of the range, whose set() counts as a change of this list. 
+	 */
+	@Override
+	public List<Record> subList (int fromIndex, int toIndex) {
+		if (store == null) 
+			return new SubList(super.subList(fromIndex, toIndex)); 
+		Objects.checkFromToIndex(fromIndex, toIndex, size()); 
+		int [] range = new int [toIndex - fromIndex]; 
+		for (int i = 0; i < range.length; i++) 
+			range[i] = rows == null ? fromIndex + i : rows[fromIndex + i]; 
+		return new RecordList(store, range); 
+	}
+	
+	@Override
+	public boolean add (Record r) {
+		materialize(); 
+		return super.add(r); 
+	}
+	
+	@Override
+	public void add (int index, Record r) {
+		materialize(); 
+		super.add(index, r); 
+	}
+	
+	@Override
+	public boolean addAll (Collection<? extends Record> records) {
+		materialize(); 
+		return super.addAll(records); 
+	}
+	
+	@Override
+	public boolean addAll (int index, Collection<? extends Record> records) {
+		materialize(); 
+		return super.addAll(index, records); 
+	}
+	
+	/* Replaces the record at the position, the indexes no longer describe the list afterwards 
+	 */
+	@Override
+	public Record set (int index, Record r) {
+		materialize(); 
+		Record old = super.set(index, r); 
+		replaced++; 
+		return old; 
+	}
+	
+	@Override
+	public Record remove (int index) {
+		materialize(); 
+		return super.remove(index); 
+	}
+	
+	@Override
+	public boolean remove (Object o) {
+		materialize(); 
+		return super.remove(o); 
+	}
+	
+	@Override
+	public boolean removeAll (Collection<?> c) {
+		materialize(); 
+		return super.removeAll(c); 
+	}
+	
+	@Override
+	public boolean retainAll (Collection<?> c) {
+		materialize(); 
+		return super.retainAll(c); 
+	}
+	
+	@Override
+	public boolean removeIf (Predicate<? super Record> filter) {
+		materialize(); 
+		return super.removeIf(filter); 
+	}
+	
+	@Override
+	public void replaceAll (UnaryOperator<Record> operator) {
+		materialize(); 
+		super.replaceAll(operator); 
+	}
+	
+	@Override
+	public void sort (Comparator<? super Record> c) {
+		materialize(); 
+		super.sort(c); 
+	}
+	
+	@Override
+	public void clear () {
+		materialize(); 
+		super.clear(); 
+	}
+	
+	@Override
+	protected void removeRange (int fromIndex, int toIndex) {
+		materialize(); 
+		super.removeRange(fromIndex, toIndex); 
+	}
+	
+	/*
+	 * Helper method that determines if the record repeats an equal record with the same registration type (case insensitive). 
+	 */
+	private static boolean isDuplicate (Record other, Record r) {
+		return other.equals(r) && CaseFold.fold(other.getType()).equals(CaseFold.fold(r.getType())); 
+	}
+	
+	/*
+	 * Helper method that finds the position after the last record of the sorted list that is smaller than or equal to the record. 
+	 */
+	private int upperBound (Record r) {
+		int from = 0; 
+		int to = size(); 
+		while (from < to) {
+			int mid = (from + to) >>> 1; 
+			if (get(mid).compareTo(r) <= 0) 
+				from = mid + 1; 
+			else 
+				to = mid; 
+		}
+		return from; 
+	}
+	
+	/*
+	 * Helper method that determines if the records are a list stored in columns. 
+	 */
+	private static boolean isStored (Collection<Record> records) {
+		return records instanceof RecordList && ((RecordList) records).store != null; 
+	}
+	
+	/*
+	 * Helper method that creates the records of a list stored in columns and places them in the list itself, 
+	 * before the list is modified. The indexes remain valid, the content of the list does not change. 
+	 */
+	private void materialize () {
+		if (store == null) 
+			return; 
+		boolean indexed = isIndexed(); 
+		Object [] records = toArray(); 
+		store = null; 
+		rows = null; 
+		super.ensureCapacity(records.length); 
+		for (Object r : records) 
+			super.add((Record) r); 
+		if (indexed) 
+			indexedVersion = version(); 
+	}
+	
+	/*
+	 * Helper method that returns the version of the content of the list, which changes with every modification: 
+	 * the structural modifications counted by modCount and the records replaced by set(). 
+	 */
+	private int version () {
+		return modCount + replaced; 
+	}
+	
+	/*
+	 * Helper method that looks up the result of a query in the cache, if there is one. 
+	 */
+	private RecordList fromCache (String command, String keyword) {
+		return cache == null ? null : cache.get(command, keyword, version()); 
+	}
+	
+	/*
+	 * Helper method that stores the result of a query in the cache, if there is one. 
+	 * Returns a copy of the result so that the caller cannot modify the cached list. 
+	 */
+	private RecordList toCache (String command, String keyword, RecordList result) {
+		if (cache == null) 
+			return result; 
+		cache.put(command, keyword, version(), result); 
+		return result == null ? null : new RecordList(result); 
+	}
+
+	/*
+	 * Collects the k smallest of the matching records, given by their positions in this list. 
+	 * While the list is indexed the positions are added in increasing order, which is the order 
+	 * of the records, so the first k positions are the result and the search can stop once it has them. 
+	 * Otherwise the positions are kept in a bounded heap whose top is the largest of the k smallest 
+	 * records seen so far (equal records are ordered by position, like the stable sort of getByName()). 
+	 */
+	private class TopK {
+		private final int k; 
+		private final boolean ordered = isIndexed(); 
+		private final Comparator<Integer> order = (a, b) -> { 
+			int c = get(a).compareTo(get(b)); 
+			return c != 0 ? c : Integer.compare(a, b); 
+		}; 
+		private final RecordList first = new RecordList(); 
+		private final PriorityQueue<Integer> heap; 
+		
+		TopK (int k) {
+			this.k = k; 
+			heap = ordered ? null : new PriorityQueue<Integer>(Math.min(k, 1024), order.reversed()); 
+		}
+		
+		boolean isFull () {
+			return ordered && first.size() >= k; 
+		}
+		
+		void add (int id) {
+			if (ordered) {
+				if (first.size() < k) 
+					first.add(get(id)); 
+			}
+			else if (heap.size() < k) {
+				heap.add(id); 
+			}
+			else if (order.compare(id, heap.peek()) < 0) {
+				heap.poll(); 
+				heap.add(id); 
+			}
+		}
+		
+		RecordList result () {
+			if (!ordered) {
+				Integer [] ids = heap.toArray(new Integer [heap.size()]); 
+				Arrays.sort(ids, order); 
+				for (Integer id : ids) 
+					first.add(get(id)); 
+			}
+			return first.isEmpty() ? null : first; 
+		}
+	}
 
-}
+	
+	/*
+	 * Iterator of a list stored in columns, the records are created as they are read. 
+	 * The methods that modify the list store the records in the list itself (see materialize()). 
+	 */
+	private class StoredIterator implements ListIterator<Record> {
+		private int next; 
+		private int last = -1; 
+	
+		StoredIterator (int index) {
+			next = index; 
+		}
+	
+		public boolean hasNext () {
+			return next < size(); 
+		}
+	
+		public Record next () {
+			if (!hasNext()) 
+				throw new NoSuchElementException(); 
+			last = next++; 
+			return get(last); 
+		}
+	
+		public boolean hasPrevious () {
+			return next > 0; 
+		}
+	
+		public Record previous () {
+			if (!hasPrevious()) 
+				throw new NoSuchElementException(); 
+			last = --next; 
+			return get(last); 
+		}
+	
+		public int nextIndex () {
+			return next; 
+		}
+	
+		public int previousIndex () {
+			return next - 1; 
+		}
+	
+		public void remove () {
+			if (last < 0) 
+				throw new IllegalStateException(); 
+			RecordList.this.remove(last); 
+			if (last < next) 
+				next--; 
+			last = -1; 
+		}
+	
+		public void set (Record r) {
+			if (last < 0) 
+				throw new IllegalStateException(); 
+			RecordList.this.set(last, r); 
+		}
+	
+		public void add (Record r) {
+			RecordList.this.add(next++, r); 
+			last = -1; 
+		}
+	}
+	
+	/*
+	 * View of a range of the list. The view of ArrayList writes the replaced records directly into the array, 
+	 * so its set() is followed by the same change of version as set() of the list (see version()). 
+	 */
+	private class SubList extends AbstractList<Record> implements RandomAccess {
+		private final List<Record> view; 
+	
+		SubList (List<Record> view) {
+			this.view = view; 
+		}
+	
+		public Record get (int index) {
+			return view.get(index); 
+		}
+	
+		public int size () {
+			return view.size(); 
+		}
+	
+		public Record set (int index, Record r) {
+			Record old = view.set(index, r); 
+			replaced++; 
+			return old; 
+		}
+	
+		public void add (int index, Record r) {
+			view.add(index, r); 
+			modCount++; 
+		}
+	
+		public Record remove (int index) {
+			Record old = view.remove(index); 
+			modCount++; 
+			return old; 
+		}
+	
+		public void clear () {
+			view.clear(); 
+			modCount++; 
+		}
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,434 @@
+package project3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class converts the rows of the data set of the registered NYS tax preparers and facilitators
+ * into {@link Record} objects.
+ *
+ * <p>The file can be loaded serially, one row at a time, or in parallel. The parallel loader
+ * memory-maps the file, splits it into chunks that end at row boundaries (newlines that are
+ * not inside of quotes) and parses and validates each chunk on a fork-join pool.
+ * Both loaders produce the same records in the same order.
+ *
+ * <p>Repeated rows are removed before the records are sorted (see {@link RecordList#removeDuplicates()}).
+ * The number of rows read, the parsing time, the number of rows skipped for each reason and the
+ * number of removed duplicates are recorded in the {@link Metrics} of the program.
+ *
+ */
+
+public class RecordLoader {
+
+	//column indexes
+	static final int REQUIRED_COLS = 6;  //since the city name is in the sixth column and it is one of the required elements
+	static final int TYPE = 0;
+	static final int FIRST_NAME = 1;
+	static final int INITIAL = 2;
+	static final int LAST_NAME = 3;
+	static final int BUSINESS_NAME = 4;
+	static final int CITY = 5;
+	static final int STATE = 6;
+	static final int COUNTRY = 7;
+	static final int ZIP = 8;
+	static final int GEOREFERENCE = 10;
+
+	//files smaller than this are not worth splitting
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+	private RecordLoader() {}
+
+	/**
+	 * Loads all the valid records from the file one row at a time.
+	 * The first row of the file is assumed to be the column header row.
+	 * @param file the file to read
+	 * @return sorted list of the valid records, without duplicates
+	 * @throws IOException when the file cannot be read
+	 */
+	public static RecordList load ( File file ) throws IOException {
+		return load(file, new StringPool());
+	}
+
+	/**
+	 * Loads all the valid records from the file one row at a time. The repeated values of the
+	 * locations, businesses and registration types are replaced with their canonical instances from the pool.
+	 * The first row of the file is assumed to be the column header row.
+	 * @param file the file to read
+	 * @param pool pool of canonical values used for this load, or null to keep every value as it was read
+	 * @return sorted list of the valid records, without duplicates
+	 * @throws IOException when the file cannot be read
+	 */
+	public static RecordList load ( File file, StringPool pool ) throws IOException {
+		LongAdder rows = new LongAdder();
+		long start = System.nanoTime();
+		RecordList recordList = readSerial(file, pool, rows);
+		Metrics.global().parsed(rows.sum(), System.nanoTime() - start);
+		removeDuplicates(recordList);
+		recordList.buildIndexes();
+		return recordList;
+	}
+
+	/**
+	 * Loads all the valid records from the file using all available processors.
+	 * The first row of the file is assumed to be the column header row.
+	 * The result is the same as the result of {@link #load(File)}.
+	 * @param file the file to read
+	 * @return sorted list of the valid records, without duplicates
+	 * @throws IOException when the file cannot be read
+	 */
+	public static RecordList loadParallel ( File file ) throws IOException {
+		return loadParallel(file, new StringPool());
+	}
+
+	/**
+	 * Loads all the valid records from the file using all available processors. The repeated values of the
+	 * locations, businesses and registration types are replaced with their canonical instances from the pool.
+	 * The first row of the file is assumed to be the column header row.
+	 * The result is the same as the result of {@link #load(File, StringPool)}.
+	 * @param file the file to read
+	 * @param pool pool of canonical values used for this load, or null to keep every value as it was read
+	 * @return sorted list of the valid records, without duplicates
+	 * @throws IOException when the file cannot be read
+	 */
+	public static RecordList loadParallel ( File file, StringPool pool ) throws IOException {
+		LongAdder rows = new LongAdder();
+		long start = System.nanoTime();
+		RecordList recordList = readParallel(file, pool, rows);
+		Metrics.global().parsed(rows.sum(), System.nanoTime() - start);
+		removeDuplicates(recordList);
+		recordList.buildIndexes();
+		return recordList;
+	}
+
+	/**
+	 * Reads the valid records from a part of the file that starts at the beginning of a row,
+	 * for example the rows appended to the file since it was loaded. The records are not sorted.
+	 * @param file the file to read
+	 * @param from position of the first byte of the part, the beginning of a row
+	 * @param to position just after the last byte of the part, the end of a row
+	 * @param pool pool of canonical values, or null to keep every value as it was read
+	 * @return list of the valid records, in the order of the rows
+	 * @throws IOException when the file cannot be read
+	 */
+	public static RecordList readRange ( File file, long from, long to, StringPool pool ) throws IOException {
+		RecordList recordList = new RecordList();
+		if (to <= from) {
+			return recordList;
+		}
+		LongAdder rows = new LongAdder();
+		long start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			recordList.addAll( parseChunk( channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), false, pool, rows) );
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		Metrics.global().parsed(rows.sum(), System.nanoTime() - start);
+		return recordList;
+	}
+
+	/*
+	 * Helper method that removes the repeated rows before the records are sorted and indexed.
+	 */
+	private static void removeDuplicates ( RecordList recordList ) {
+		long start = System.nanoTime();
+		recordList.removeDuplicates();
+		Metrics.global().phase(Metrics.DEDUP, System.nanoTime() - start);
+	}
+
+	/*
+	 * Helper method that reads the records one row at a time and adds the number of data rows to rows.
+	 */
+	private static RecordList readSerial ( File file, StringPool pool, LongAdder rows ) throws IOException {
+		RecordList recordList = new RecordList();
+		try (CSVStream csvData = new CSVStream(new FileInputStream(file))) {
+			//read and ignore the column header row
+			if (csvData.hasNext()) {
+				csvData.next();
+			}
+			int count = 0;
+			while (csvData.hasNext()) {
+				Record record = toRecord(csvData.next(), pool);
+				count++;
+				if (record != null) {
+					recordList.add(record);
+				}
+			}
+			rows.add(count);
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		return recordList;
+	}
+
+	/*
+	 * Helper method that reads the records in chunks that are parsed in parallel.
+	 */
+	private static RecordList readParallel ( File file, StringPool pool, LongAdder rows ) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			int parallelism = ForkJoinPool.getCommonPoolParallelism();
+			int chunks = (int) Math.min( parallelism * 4L, size / MIN_CHUNK_SIZE);
+			if (chunks < 2 ) {
+				return readSerial(file, pool, rows);
+			}
+
+			ForkJoinPool forkJoin = ForkJoinPool.commonPool();
+
+			//count the quotes in each of the equal size pieces of the file, so that
+			//the state of the quotes is known at the beginning of each piece
+			long [] starts = new long [chunks + 1];
+			for (int i = 0; i <= chunks; i++) {
+				starts[i] = size * i / chunks;
+			}
+			List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+			for (int i = 0; i < chunks; i++) {
+				long from = starts[i];
+				long to = starts[i + 1];
+				counts.add( () -> countQuotes( channel.map(FileChannel.MapMode.READ_ONLY, from, to - from)) );
+			}
+			List<Future<Integer>> quoteCounts = forkJoin.invokeAll(counts);
+
+			//move the start of each piece to the beginning of the next row
+			List<Callable<Long>> boundaries = new ArrayList<Callable<Long>>();
+			boolean insideQuotes = false;
+			for (int i = 1; i < chunks; i++) {
+				insideQuotes ^= (get(quoteCounts.get(i - 1)) & 1) == 1;
+				long from = starts[i];
+				boolean quoted = insideQuotes;
+				boundaries.add( () -> nextRowStart(channel, from, size, quoted) );
+			}
+			List<Future<Long>> rowStarts = forkJoin.invokeAll(boundaries);
+			for (int i = 1; i < chunks; i++) {
+				starts[i] = get(rowStarts.get(i - 1));
+			}
+
+			//parse and validate each chunk
+			List<Callable<ArrayList<Record>>> parsers = new ArrayList<Callable<ArrayList<Record>>>();
+			for (int i = 0; i < chunks; i++) {
+				long from = starts[i];
+				long to = starts[i + 1];
+				boolean header = (i == 0);
+				parsers.add( () -> parseChunk( channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), header, pool, rows) );
+			}
+
+			RecordList recordList = new RecordList();
+			for (Future<ArrayList<Record>> chunk : forkJoin.invokeAll(parsers)) {
+				recordList.addAll( get(chunk) );
+			}
+			return recordList;
+		}
+	}
+
+	/**
+	 * Converts a single row of the data set into a Record object.
+	 * @param row list of the entries in the row
+	 * @return the record, or null if the row is incomplete or contains an invalid name or location
+	 */
+	public static Record toRecord ( ArrayList<String> row ) {
+		return toRecord(row, null);
+	}
+
+	/**
+	 * Converts a single row of the data set into a Record object that uses the canonical instances
+	 * of the repeated values from the pool.
+	 * @param row list of the entries in the row
+	 * @param pool pool of canonical values, or null to keep every value as it was read
+	 * @return the record, or null if the row is incomplete or contains an invalid name or location
+	 */
+	public static Record toRecord ( ArrayList<String> row, StringPool pool ) {
+
+		if (row.size() < REQUIRED_COLS) return skip(Metrics.SHORT_ROW); //skip incomplete rows
+
+		int size = row.size();
+
+		//create Name object
+		String fName=row.get(FIRST_NAME);
+		String lName=row.get(LAST_NAME);
+		String middle = row.get(INITIAL);
+		char mInitial = middle.length() >= 1 ? middle.charAt(0) : '\0';
+		Name name = null;
+		try {
+			name = new Name (lName, fName, mInitial) ;
+		}
+		catch (IllegalArgumentException ex ) {
+			return skip(Metrics.INVALID_NAME); //skip records with invalid names
+		}
+
+		//create Location object
+		String city = row.get(CITY);
+		String state = size > STATE ? row.get(STATE) : null;
+		String country = size > COUNTRY ? row.get(COUNTRY) : null ;
+		String zip = size > ZIP ? row.get(ZIP) : null;
+
+		//the georeference is a point in the format POINT (LONGITUDE LATITUDE)
+		double [] point = size > GEOREFERENCE ? parsePoint(row.get(GEOREFERENCE)) : null;
+		double latitude = point == null ? Double.NaN : point[1];
+		double longitude = point == null ? Double.NaN : point[0];
+
+		Location location = null;
+		try {
+			location = new Location(city, state, country, zip, latitude, longitude, pool ) ;
+		}
+		catch (IllegalArgumentException ex ) {
+			return skip(Metrics.INVALID_LOCATION); //skip records with invalid locations
+		}
+
+		//create Record object
+		try {
+			return new Record (name, row.get(BUSINESS_NAME), location, row.get(TYPE), pool);
+		}
+		catch (IllegalArgumentException ex ) {
+			return skip(Metrics.INVALID_RECORD); //skip invalid records (this really should not happen in this context
+						 //since we validated both name and location before
+		}
+	}
+
+
+	/*
+	 * Helper method that counts a skipped row.
+	 */
+	private static Record skip ( String reason ) {
+		Metrics.global().skipped(reason);
+		return null;
+	}
+
+	/*
+	 * Helper method that parses a georeference in the format POINT (LONGITUDE LATITUDE).
+	 * Returns the longitude and the latitude, or null if the value is missing or invalid.
+	 */
+	static double [] parsePoint ( String georeference ) {
+		if (georeference == null || !georeference.startsWith("POINT (") || !georeference.endsWith(")")) return null;
+		String [] parts = georeference.substring(7, georeference.length() - 1).trim().split("\\s+");
+		if (parts.length != 2) return null;
+		try {
+			double longitude = Double.parseDouble(parts[0]);
+			double latitude = Double.parseDouble(parts[1]);
+			if (!(longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90)) return null;
+			return new double [] {longitude, latitude};
+		}
+		catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	/*
+	 * Helper method that parses all the rows in the buffer into records and adds the number of data rows to rows.
+	 */
+	private static ArrayList<Record> parseChunk ( ByteBuffer chunk, boolean skipHeader, StringPool pool, LongAdder rows ) throws IOException {
+		ArrayList<Record> records = new ArrayList<Record>();
+		try (CSVStream csvData = new CSVStream(new ByteBufferInputStream(chunk))) {
+			if (skipHeader && csvData.hasNext()) {
+				csvData.next();
+			}
+			int count = 0;
+			while (csvData.hasNext()) {
+				Record record = toRecord(csvData.next(), pool);
+				count++;
+				if (record != null) {
+					records.add(record);
+				}
+			}
+			rows.add(count);
+		}
+		return records;
+	}
+
+	/*
+	 * Helper method that counts the double quote characters in the buffer.
+	 */
+	private static int countQuotes ( ByteBuffer buffer ) {
+		int count = 0;
+		for (int i = buffer.position(); i < buffer.limit(); i++ ) {
+			if (buffer.get(i) == '"') count++;
+		}
+		return count;
+	}
+
+	/*
+	 * Helper method that finds the position just after the first newline character that is
+	 * not inside of quotes, starting at position from. Returns size if there is no such newline.
+	 */
+	private static long nextRowStart ( FileChannel channel, long from, long size, boolean insideQuotes ) throws IOException {
+		final int window = 1 << 16;
+		for (long start = from; start < size; start += window) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(window, size - start));
+			for (int i = 0; i < buffer.limit(); i++) {
+				byte b = buffer.get(i);
+				if (b == '"') {
+					insideQuotes = !insideQuotes;
+				}
+				else if (b == '\n' && !insideQuotes) {
+					return start + i + 1;
+				}
+			}
+		}
+		return size;
+	}
+
+	/*
+	 * Helper method that waits for the result of a task and rethrows its failure.
+	 */
+	private static <T> T get ( Future<T> future ) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("loading was interrupted", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/*
+	 * InputStream that reads the bytes of a (memory-mapped) buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream ( ByteBuffer buffer ) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read( byte [] b, int off, int len ) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,415 @@
+package project3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A data set split into shards, for example one shard per state extract, each a sorted and indexed
+ * {@link RecordList} with its own indexes and its own cache.
+ *
+ * <p>Each query reads the current list of every shard once and runs on all of them concurrently (the first
+ * shard on the calling thread, the others on the common fork-join pool). The per-shard results are combined:
+ * <ul>
+ * <li>the sorted results of the record queries with a k-way merge in {@link Record} order (records that
+ * compare as equal keep the order of their shards), stopping as soon as a requested number of records is reached,</li>
+ * <li>the results of {@code near} with a k-way merge by distance from the point, then in {@link Record} order,</li>
+ * <li>the completions and the counts by adding up the numbers of records of the same value in all the shards,
+ * with the threshold algorithm: the most frequent values of each shard are read, a value seen in one shard is looked up
+ * in the others, and the shards are read deeper only while a value not seen yet could still be among the most frequent.</li>
+ * </ul>
+ * A data set with a single shard is queried directly, so its results are exactly the results of its list.
+ *
+ */
+
+public class RecordShards {
+
+	private final List<Supplier<RecordList>> shards;
+
+	/**
+	 * Constructs a data set from the shards.
+	 * @param shards supply the current list of each shard, the supplied lists should not be modified
+	 * @throws IllegalArgumentException when there are no shards
+	 * @throws NullPointerException when {@code shards} or one of the shards is null
+	 */
+	public RecordShards ( List<Supplier<RecordList>> shards ) {
+		if (shards.isEmpty()) throw new IllegalArgumentException("there are no shards");
+		for (Supplier<RecordList> shard : shards) {
+			if (shard == null) throw new NullPointerException("shard is null");
+		}
+		this.shards = new ArrayList<Supplier<RecordList>>(shards);
+	}
+
+	/**
+	 * Returns the number of shards.
+	 * @return the number of shards
+	 */
+	public int shardCount () {
+		return shards.size();
+	}
+
+	/**
+	 * Returns the number of records in all the shards.
+	 * @return the number of records
+	 */
+	public int size () {
+		int size = 0;
+		for (RecordList list : current()) size += list.size();
+		return size;
+	}
+
+	/**
+	 * Returns the records of all the shards whose name contains the keyword, see {@link RecordList#getByName(String)}.
+	 * @param keyword substring of a person's last name or first name
+	 * @return sorted list of the matching records, or null if there are none
+	 * @throws IllegalArgumentException if the keyword is null or blank
+	 */
+	public RecordList getByName ( String keyword ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getByName(keyword) ), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the records of all the shards whose city or zip code contains the keyword, see {@link RecordList#getByCity(String)}.
+	 * @param keyword substring of a city
+	 * @return sorted list of the matching records, or null if there are none
+	 * @throws IllegalArgumentException if the keyword is null or blank
+	 */
+	public RecordList getByCity ( String keyword ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getByCity(keyword) ), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the records of all the shards with the zip code, see {@link RecordList#getByZip(String)}.
+	 * @param zip zip code
+	 * @return sorted list of the matching records, or null if there are none
+	 * @throws IllegalArgumentException if the zip code is not valid
+	 */
+	public RecordList getByZip ( String zip ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getByZip(zip) ), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the first k records of {@link #getByName(String)}, each shard finds only its first k records.
+	 * @param keyword substring of a person's last name or first name
+	 * @param k maximum number of records to return
+	 * @return the first k matching records, or null if there are none
+	 * @throws IllegalArgumentException if the keyword is null or blank, or k is not positive
+	 */
+	public RecordList getTopByName ( String keyword, int k ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getTopByName(keyword, k) ), k);
+	}
+
+	/**
+	 * Returns the first k records of {@link #getByCity(String)}, each shard finds only its first k records.
+	 * @param keyword substring of a city
+	 * @param k maximum number of records to return
+	 * @return the first k matching records, or null if there are none
+	 * @throws IllegalArgumentException if the keyword is null or blank, or k is not positive
+	 */
+	public RecordList getTopByCity ( String keyword, int k ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getTopByCity(keyword, k) ), k);
+	}
+
+	/**
+	 * Returns the first k records of {@link #getByZip(String)}, each shard finds only its first k records.
+	 * @param zip zip code
+	 * @param k maximum number of records to return
+	 * @return the first k matching records, or null if there are none
+	 * @throws IllegalArgumentException if the zip code is not valid, or k is not positive
+	 */
+	public RecordList getTopByZip ( String zip, int k ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getTopByZip(zip, k) ), k);
+	}
+
+	/**
+	 * Returns the records of all the shards with a name within the edit distance of the keyword,
+	 * see {@link RecordList#getByFuzzyName(String, int)}.
+	 * @param keyword the name
+	 * @param maxEdits largest number of edits
+	 * @return sorted list of the matching records, or null if there are none
+	 * @throws IllegalArgumentException if the keyword is null or blank, or the number of edits is not valid
+	 */
+	public RecordList getByFuzzyName ( String keyword, int maxEdits ) throws IllegalArgumentException {
+		return merge(fanOut( list -> list.getByFuzzyName(keyword, maxEdits) ), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the records of all the shards that match all the predicates of the query.
+	 * @param query the query
+	 * @return sorted list of the matching records, or null if there are none
+	 * @throws IllegalStateException if the query has no predicates
+	 */
+	public RecordList execute ( CompoundQuery query ) {
+		return merge(fanOut( list -> query.execute(list) ), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the records of all the shards located within the radius of the point, closest first,
+	 * see {@link RecordList#getNear(double, double, double)}.
+	 * @param latitude latitude of the point in degrees
+	 * @param longitude longitude of the point in degrees
+	 * @param radiusKm radius in kilometers
+	 * @return list of the records within the radius, closest first, or null if there are none
+	 * @throws IllegalArgumentException if the point or the radius is invalid
+	 */
+	public RecordList getNear ( double latitude, double longitude, double radiusKm ) throws IllegalArgumentException {
+		List<RecordList> results = fanOut( list -> list.getNear(latitude, longitude, radiusKm) );
+		if (results.size() == 1) return results.get(0);
+
+		//the shards order their records by the distance rounded to a float, then in the Record order,
+		//the distance of each record is computed once (merge() reads every record once)
+		Map<Record, Float> distances = new IdentityHashMap<Record, Float>();
+		Function<Record, Float> distance = r -> distances.computeIfAbsent(r, x -> (float) GeoIndex.distanceKm(latitude, longitude,
+				x.getLocation().getLatitude(), x.getLocation().getLongitude()));
+		return merge(results, Integer.MAX_VALUE, (a, b) -> {
+			int c = Float.compare(distance.apply(a), distance.apply(b));
+			return c != 0 ? c : a.compareTo(b);
+		});
+	}
+
+	/**
+	 * Returns the most frequent last names and cities of all the shards that start with the prefix,
+	 * see {@link RecordList#complete(String, int)}. The numbers of records of a value in the shards are added up.
+	 * @param prefix beginning of a last name or a city
+	 * @param k largest number of completions
+	 * @return at most k completions, the most frequent first
+	 * @throws IllegalArgumentException if the prefix is null or blank, or k is not positive
+	 */
+	public List<CompletionIndex.Completion> complete ( String prefix, int k ) throws IllegalArgumentException {
+		if (shards.size() == 1) return shards.get(0).get().complete(prefix, k);
+		if (prefix == null || prefix.isBlank() || k < 1) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+
+		String folded = CaseFold.fold(prefix);
+		List<Ranking<CompletionIndex.Completion>> rankings = new ArrayList<Ranking<CompletionIndex.Completion>>();
+		for (CompletionIndex index : fanOut( list -> list.completions() )) {
+			rankings.add(new Ranking<CompletionIndex.Completion>() {
+				List<CompletionIndex.Completion> top ( int n ) {
+					return index.complete(folded, n);
+				}
+				CompletionIndex.Completion find ( CompletionIndex.Completion c ) {
+					return index.find(CaseFold.fold(c.getValue()), c.getKind());
+				}
+				//the folded value then the kind, which sorts like the index: '\0' is smaller than all the characters of a value
+				String key ( CompletionIndex.Completion c ) {
+					return CaseFold.fold(c.getValue()) + '\0' + c.getKind();
+				}
+				int count ( CompletionIndex.Completion c ) {
+					return c.getCount();
+				}
+			});
+		}
+		//the spelling of the first shard with the value is displayed
+		return top(rankings, k, (a, b) -> new CompletionIndex.Completion(a.getValue(), a.getKind(), a.getCount() + b.getCount()));
+	}
+
+	/**
+	 * Returns the values of the field with the largest numbers of records in all the shards,
+	 * see {@link RecordList#countBy(String, int)}. The numbers of records of a value in the shards are added up.
+	 * @param field the field to group the records by
+	 * @param n largest number of values
+	 * @return at most n values, the most frequent first
+	 * @throws IllegalArgumentException if the field is not known or n is negative
+	 */
+	public List<Aggregates.Count> countBy ( String field, int n ) throws IllegalArgumentException {
+		if (shards.size() == 1) return shards.get(0).get().countBy(field, n);
+		if (field == null || !Aggregates.isField(field) || n < 0) {
+			throw new IllegalArgumentException("This is not a valid query. Invalid keyword. Try again.");
+		}
+		if (n == 0) return new ArrayList<Aggregates.Count>();
+
+		List<Ranking<Aggregates.Count>> rankings = new ArrayList<Ranking<Aggregates.Count>>();
+		for (Aggregates counts : fanOut( list -> list.counts() )) {
+			rankings.add(new Ranking<Aggregates.Count>() {
+				List<Aggregates.Count> top ( int m ) {
+					return counts.top(field, m);
+				}
+				Aggregates.Count find ( Aggregates.Count c ) {
+					return counts.count(field, c.getValue());
+				}
+				String key ( Aggregates.Count c ) {
+					return CaseFold.fold(c.getValue());
+				}
+				int count ( Aggregates.Count c ) {
+					return c.getCount();
+				}
+			});
+		}
+		//the smallest spelling is displayed, as in a single shard
+		return top(rankings, n, (a, b) -> new Aggregates.Count(
+				a.getValue().compareTo(b.getValue()) <= 0 ? a.getValue() : b.getValue(), a.getCount() + b.getCount()));
+	}
+
+
+	/*
+	 * Helper method that returns the current list of each shard.
+	 */
+	private List<RecordList> current () {
+		List<RecordList> lists = new ArrayList<RecordList>(shards.size());
+		for (Supplier<RecordList> shard : shards) lists.add(shard.get());
+		return lists;
+	}
+
+	/*
+	 * Helper method that runs the query on the current list of every shard and returns the results in the order of the shards.
+	 * If the query fails on a shard, for example because of an invalid argument, the shards that are still waiting are cancelled.
+	 */
+	private <T> List<T> fanOut ( Function<RecordList, T> query ) {
+		List<RecordList> lists = current();
+		if (lists.size() == 1) return Collections.singletonList(query.apply(lists.get(0)));
+
+		List<Future<T>> others = new ArrayList<Future<T>>();
+		for (int s = 1; s < lists.size(); s++) {
+			RecordList list = lists.get(s);
+			others.add(ForkJoinPool.commonPool().submit( () -> query.apply(list) ));
+		}
+		List<T> results = new ArrayList<T>(lists.size());
+		try {
+			results.add(query.apply(lists.get(0)));
+			for (Future<T> result : others) results.add(get(result));
+		}
+		catch (RuntimeException | Error ex) {
+			for (Future<T> result : others) result.cancel(true);
+			throw ex;
+		}
+		return results;
+	}
+
+	/*
+	 * Helper method that merges sorted lists in the Record order, keeping at most limit records.
+	 */
+	private static RecordList merge ( List<RecordList> results, int limit ) {
+		return merge(results, limit, Record::compareTo);
+	}
+
+	/*
+	 * Helper method that merges lists sorted by the order, keeping at most limit records.
+	 * Returns null if all the lists are null or empty.
+	 */
+	private static RecordList merge ( List<RecordList> results, int limit, Comparator<Record> order ) {
+		List<RecordList> lists = new ArrayList<RecordList>();
+		for (RecordList result : results) {
+			if (result != null && !result.isEmpty()) lists.add(result);
+		}
+		if (lists.isEmpty()) return null;
+		if (lists.size() == 1) {
+			RecordList only = lists.get(0);
+			return only.size() <= limit ? only : new RecordList(only.subList(0, limit));
+		}
+
+		//the results of indexed shards create their records when they are read, so each record is read once
+		Record [][] records = new Record [lists.size()][];
+		long total = 0;
+		for (int l = 0; l < lists.size(); l++) {
+			records[l] = lists.get(l).toArray(new Record [0]);
+			total += records[l].length;
+		}
+
+		//each entry of the queue is the position of the next record of a list: {list, position}
+		PriorityQueue<int []> next = new PriorityQueue<int []>(lists.size(), (a, b) -> {
+			int c = order.compare(records[a[0]][a[1]], records[b[0]][b[1]]);
+			return c != 0 ? c : Integer.compare(a[0], b[0]);
+		});
+		for (int l = 0; l < lists.size(); l++) {
+			next.add(new int [] {l, 0});
+		}
+		RecordList merged = new RecordList();
+		merged.ensureCapacity((int) Math.min(total, limit));
+		while (!next.isEmpty() && merged.size() < limit) {
+			int [] top = next.poll();
+			merged.add(records[top[0]][top[1]]);
+			if (++top[1] < records[top[0]].length) next.add(top);
+		}
+		return merged;
+	}
+
+	/*
+	 * Helper method that finds the k values with the largest sums of counts in all the shards (equal sums in the
+	 * order of their keys) with the threshold algorithm. The first values of every shard are read, each value
+	 * seen for the first time is looked up in all the shards to get its sum, and the depth doubles until the
+	 * k-th sum is larger than the sum of the last counts read (the largest sum of a value not seen yet). A value
+	 * not seen yet can only have that sum if it comes after the last value read in every shard, so an equal k-th
+	 * sum is enough when its key is not larger than the last keys read.
+	 */
+	private static <T> List<T> top ( List<Ranking<T>> rankings, int k, BinaryOperator<T> add ) {
+		Map<String, T> sums = new HashMap<String, T>();
+		for (int depth = k; ; depth = depth > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : depth * 2) {
+			long threshold = 0;
+			String lastKey = null;
+			boolean exhausted = true;
+			for (Ranking<T> ranking : rankings) {
+				List<T> values = ranking.top(depth);
+				for (T value : values) {
+					String key = ranking.key(value);
+					if (sums.containsKey(key)) continue;
+					T sum = null;
+					for (Ranking<T> other : rankings) {
+						T found = other == ranking ? value : other.find(value);
+						if (found != null) sum = sum == null ? found : add.apply(sum, found);
+					}
+					sums.put(key, sum);
+				}
+				if (values.size() == depth) {
+					//the shard may have more values, none of them larger than the last one
+					T last = values.get(depth - 1);
+					exhausted = false;
+					threshold += ranking.count(last);
+					if (lastKey == null || ranking.key(last).compareTo(lastKey) > 0) lastKey = ranking.key(last);
+				}
+			}
+
+			Ranking<T> order = rankings.get(0);
+			List<T> top = new ArrayList<T>(sums.values());
+			top.sort( (a, b) -> order.count(a) != order.count(b) ? Integer.compare(order.count(b), order.count(a))
+					: order.key(a).compareTo(order.key(b)) );
+			if (exhausted || top.size() >= k && (order.count(top.get(k - 1)) > threshold
+					|| order.count(top.get(k - 1)) == threshold && order.key(top.get(k - 1)).compareTo(lastKey) <= 0)) {
+				return new ArrayList<T>(top.subList(0, Math.min(k, top.size())));
+			}
+		}
+	}
+
+	/*
+	 * Helper method that waits for the result of a shard and rethrows its failure.
+	 */
+	private static <T> T get ( Future<T> result ) {
+		try {
+			return result.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("the query was interrupted", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/*
+	 * The values of one shard in the order of their counts, largest first, then in the order of their keys.
+	 */
+	private static abstract class Ranking<T> {
+		//the first n values
+		abstract List<T> top ( int n );
+		//the value of this shard with the key of a value of another shard, or null
+		abstract T find ( T value );
+		//case folded key of the value, the same in all the shards
+		abstract String key ( T value );
+		abstract int count ( T value );
+	}
+}
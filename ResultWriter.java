@@ -0,0 +1,240 @@
+package project3;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Buffered writer for the results of the queries.
+ *
+ * <p>Each record is written in the format of {@link Record#toString()}, but its fields are encoded
+ * as UTF-8 directly into a large byte buffer, without building the intermediate strings of
+ * {@code Record.toString()}, {@code Name.toString()} and {@code Location.changeZip()}.
+ * The records of a list stored in columns (see {@link RecordList#buildIndexes()}) are written straight
+ * from the columns, without creating their Record objects.
+ * The buffer is written to the underlying stream only when it is full or when the writer is flushed,
+ * so printing a large result costs a few large writes instead of a formatted write per record.
+ *
+ * <p>A result can be written partially, using an offset (number of records to skip) and a limit
+ * (maximum number of records to write).
+ *
+ */
+
+public class ResultWriter implements Closeable, Flushable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String NL = System.lineSeparator();
+
+	private final OutputStream out;
+	private final byte [] buffer = new byte [BUFFER_SIZE];
+	private int position;
+
+	/**
+	 * Constructs a writer that writes to the provided stream.
+	 * @param out stream to write to
+	 * @throws NullPointerException when {@code out} is null
+	 */
+	public ResultWriter ( OutputStream out ) {
+		if (out == null ) throw new NullPointerException("OutputStream out is null");
+		this.out = out;
+	}
+
+	/**
+	 * Writes the records from offset to offset + limit - 1 (or to the end of the list), each followed by an empty line.
+	 * @param records records to write
+	 * @param offset number of records to skip at the beginning of the list
+	 * @param limit maximum number of records to write
+	 * @return the number of records written
+	 * @throws IOException when the records cannot be written
+	 */
+	public int writeRecords ( List<Record> records, int offset, int limit ) throws IOException {
+		int from = Math.min(Math.max(offset, 0), records.size());
+		int to = (int) Math.min((long) from + Math.max(limit, 0), records.size());
+		RecordList list = records instanceof RecordList ? (RecordList) records : null;
+		for (int i = from; i < to; i++) {
+			if (list != null) {
+				list.writeRecord(this, i);
+			}
+			else {
+				writeRecord(records.get(i));
+			}
+			write(NL);
+			write(NL);
+		}
+		return to - from;
+	}
+
+	/**
+	 * Writes the record in the format of {@link Record#toString()}:
+	 * {@code LAST_NAME, FIRST_NAME, INITIAL<newline><tab>BUSINESS_NAME, CITY, STATE, COUNTRY, ZIP}.
+	 * @param r record to write
+	 * @throws IOException when the record cannot be written
+	 */
+	public void writeRecord ( Record r ) throws IOException {
+		Name name = r.getName();
+		Location location = r.getLocation();
+		writeRecord(name.getLastName(), name.getFirstName(), name.getMiddleInitial(), r.getBusiness(),
+				location.getCity(), location.getState(), location.getCountry(), location.getZip());
+	}
+
+	/*
+	 * Writes a record given by its fields, for example read from the columns of a list, in the format of writeRecord(Record).
+	 */
+	void writeRecord ( String lastName, String firstName, char initial, String business,
+			String city, String state, String country, String zip ) throws IOException {
+		write(lastName);
+		write(", ");
+		write(firstName);
+		write(", ");
+		write(initial);
+		write("\n\t");
+		write(business);
+		write(", ");
+		write(city);
+		write(", ");
+		write(state);
+		write(", ");
+		write(country);
+		write(", ");
+		writeZip(zip);
+	}
+
+	/**
+	 * Writes the string, "null" if it is null.
+	 * @param s string to write
+	 * @throws IOException when the string cannot be written
+	 */
+	public void write ( String s ) throws IOException {
+		if (s == null) s = "null";
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (position == BUFFER_SIZE) flushBuffer();
+				buffer[position++] = (byte) c;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				write(Character.toCodePoint(c, s.charAt(++i)));
+			}
+			else {
+				write((int) c);
+			}
+		}
+	}
+
+	/**
+	 * Writes the string followed by a line separator.
+	 * @param s string to write
+	 * @throws IOException when the string cannot be written
+	 */
+	public void writeLine ( String s ) throws IOException {
+		write(s);
+		write(NL);
+	}
+
+	/**
+	 * Writes bytes that are already encoded, for example the output of another writer.
+	 * @param bytes bytes to write
+	 * @throws IOException when the bytes cannot be written
+	 */
+	public void write ( byte [] bytes ) throws IOException {
+		if (bytes.length > BUFFER_SIZE - position) {
+			flushBuffer();
+			if (bytes.length > BUFFER_SIZE) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * Writes the buffered bytes to the underlying stream and flushes it.
+	 * @throws IOException when the bytes cannot be written
+	 */
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Flushes this writer and closes the underlying stream.
+	 * @throws IOException when the bytes cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+
+	/*
+	 * Helper method that writes the zip code padded with leading zeros, like Location.changeZip().
+	 */
+	private void writeZip ( String zip ) throws IOException {
+		if (zip != null && (zip.length() == 3 || zip.length() == 4)) {
+			write(zip.length() == 3 ? "00" : "0");
+		}
+		write(zip);
+	}
+
+	/*
+	 * Helper method that writes a single character encoded as UTF-8.
+	 */
+	private void write ( char c ) throws IOException {
+		if (c < 0x80) {
+			if (position == BUFFER_SIZE) flushBuffer();
+			buffer[position++] = (byte) c;
+		}
+		else {
+			write((int) c);
+		}
+	}
+
+	/*
+	 * Helper method that writes a code point encoded as UTF-8 (unpaired surrogates are written as '?').
+	 */
+	private void write ( int codePoint ) throws IOException {
+		if (position > BUFFER_SIZE - 4) flushBuffer();
+		if (codePoint < 0x80) {
+			buffer[position++] = (byte) codePoint;
+		}
+		else if (codePoint < 0x800) {
+			buffer[position++] = (byte) (0xC0 | (codePoint >> 6));
+			buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+		}
+		else if (codePoint < 0x10000) {
+			if (Character.isSurrogate((char) codePoint)) {
+				buffer[position++] = '?';
+				return;
+			}
+			buffer[position++] = (byte) (0xE0 | (codePoint >> 12));
+			buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+		}
+		else {
+			buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+			buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+			buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+		}
+	}
+
+	/*
+	 * Helper method that writes the buffered bytes to the underlying stream.
+	 */
+	private void flushBuffer() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package project3;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a loaded data set.
+ *
+ * <p>The snapshot of {@code FILE_NAME.CSV} is stored next to it in {@code FILE_NAME.CSV.snapshot}.
+ * It contains the sorted records in columnar form ({@link RecordColumns}) followed by the
+ * name, zip code and coordinate indexes, so reading it does not parse, validate, sort or index anything.
+ * The snapshot is read through a memory mapping of the file, and the records stay in the columns:
+ * no Record object is created until a query reads one.
+ *
+ * <p>The header of the snapshot records the length and the modification time that the CSV file had
+ * before the records were read from it. A snapshot whose CSV file has changed since then is ignored
+ * (and replaced by {@link #load(File)}). A file that changes while it is parsed therefore never gets a
+ * snapshot that looks up to date for its new content.
+ *
+ */
+
+public class Snapshot {
+
+	private static final int MAGIC = 0x4E595354;  //"NYST"
+	private static final int VERSION = 3;
+	private static final String SUFFIX = ".snapshot";
+
+	private Snapshot() {}
+
+	/**
+	 * Loads the records of the CSV file from its snapshot, if there is an up to date one.
+	 * Otherwise the CSV file is loaded with {@link RecordLoader#loadParallel(File)} and a new
+	 * snapshot is written for the following loads. Failure to write the snapshot is ignored.
+	 * @param csvFile the CSV file to load
+	 * @return sorted and indexed list of the valid records
+	 * @throws IOException when the CSV file cannot be read
+	 */
+	public static RecordList load ( File csvFile ) throws IOException {
+		return load(csvFile, csvFile.length(), csvFile.lastModified());
+	}
+
+	/**
+	 * Loads the records of the CSV file like {@link #load(File)}, given the length and the modification time
+	 * of the file taken before the call. The snapshot is used only if it was written for these values. A new
+	 * snapshot is stamped with them, and it is written only if the file still has them after it was parsed,
+	 * so a snapshot never contains rows that were written after the values were taken.
+	 * @param csvFile the CSV file to load
+	 * @param length length of the file before the call
+	 * @param modified modification time of the file before the call
+	 * @return sorted and indexed list of the valid records
+	 * @throws IOException when the CSV file cannot be read
+	 */
+	public static RecordList load ( File csvFile, long length, long modified ) throws IOException {
+		RecordList recordList = read(csvFile, length, modified);
+		if (recordList != null) {
+			return recordList;
+		}
+		recordList = RecordLoader.loadParallel(csvFile);
+		if (csvFile.length() != length || csvFile.lastModified() != modified) {
+			//the records may contain rows of the new content, which the values do not describe
+			return recordList;
+		}
+		try {
+			write(csvFile, recordList, length, modified);
+		}
+		catch (IOException ex) {
+			//the snapshot is only an optimization, the next load parses the file again
+		}
+		return recordList;
+	}
+
+	/**
+	 * Returns the file in which the snapshot of the CSV file is stored.
+	 * @param csvFile the CSV file
+	 * @return the snapshot file
+	 */
+	public static File snapshotFile ( File csvFile ) {
+		return new File(csvFile.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Writes the snapshot of the records loaded from the CSV file.
+	 * The snapshot is written to a temporary file first and then moved in place, so a partially
+	 * written snapshot is never read.
+	 * @param csvFile the CSV file the records were loaded from
+	 * @param recordList the records loaded from the file
+	 * @param length length of the file before the records were read from it
+	 * @param modified modification time of the file before the records were read from it
+	 * @throws IOException when the snapshot cannot be written
+	 * @throws IllegalArgumentException when the list is not indexed
+	 */
+	public static void write ( File csvFile, RecordList recordList, long length, long modified ) throws IOException {
+		if (!recordList.isIndexed()) throw new IllegalArgumentException("the list of records is not indexed");
+
+		long start = System.nanoTime();
+		File target = snapshotFile(csvFile);
+		File temp = new File(target.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(length);
+			out.writeLong(modified);
+			recordList.getColumns().write(out);
+			recordList.getNameIndex().write(out);
+			recordList.getZipIndex().write(out);
+			recordList.getGeoIndex().write(out);
+			out.writeInt(MAGIC);
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Metrics.global().phase(Metrics.SNAPSHOT_WRITE, System.nanoTime() - start);
+	}
+
+	/**
+	 * Reads the records of the CSV file from its snapshot.
+	 * @param csvFile the CSV file
+	 * @return sorted and indexed list of the records, or null if there is no snapshot, or it is
+	 * out of date, or it cannot be read
+	 */
+	public static RecordList read ( File csvFile ) {
+		return read(csvFile, csvFile.length(), csvFile.lastModified());
+	}
+
+	/**
+	 * Reads the records of the CSV file from its snapshot, if the snapshot was written for the length
+	 * and the modification time of the file.
+	 * @param csvFile the CSV file
+	 * @param length length of the file
+	 * @param modified modification time of the file
+	 * @return sorted and indexed list of the records, or null if there is no snapshot, or it is
+	 * out of date, or it cannot be read
+	 */
+	public static RecordList read ( File csvFile, long length, long modified ) {
+		File file = snapshotFile(csvFile);
+		if (!file.isFile() || file.length() > Integer.MAX_VALUE) {
+			return null;
+		}
+		long start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (in.getInt() != MAGIC || in.getInt() != VERSION
+					|| in.getLong() != length || in.getLong() != modified) {
+				return null;
+			}
+			RecordColumns columns = RecordColumns.read(in);
+			NameIndex nameIndex = NameIndex.read(in, columns.size());
+			ZipIndex zipIndex = ZipIndex.read(in, columns.size());
+			GeoIndex geoIndex = GeoIndex.read(in, columns.size());
+			if (in.getInt() != MAGIC) {
+				return null;
+			}
+
+			//the records stay in the columns and are created when they are read
+			RecordList recordList = columns.toRecordList();
+			recordList.setIndexes(nameIndex, zipIndex, geoIndex, columns);
+			Metrics.global().phase(Metrics.SNAPSHOT_READ, System.nanoTime() - start);
+			return recordList;
+		}
+		catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+			return null;
+		}
+	}
+
+
+	/*
+	 * Helper methods used by the columns and the indexes to write and read their arrays.
+	 * Arrays are stored as their length followed by the values, strings as the length of their
+	 * UTF-8 encoding (-1 for null) followed by the bytes.
+	 * Every length is checked against the remaining bytes before anything is allocated, so a corrupt
+	 * snapshot throws IllegalArgumentException (and is ignored by read()) instead of allocating a huge array.
+	 */
+
+	private static int readLength ( ByteBuffer in, int elementSize ) {
+		int length = in.getInt();
+		if (length < 0 || (long) length * elementSize > in.remaining())
+			throw new IllegalArgumentException("invalid array length " + length);
+		return length;
+	}
+
+	static void writeInts ( DataOutputStream out, int [] values ) throws IOException {
+		out.writeInt(values.length);
+		for (int v : values) out.writeInt(v);
+	}
+
+	static int [] readInts ( ByteBuffer in ) {
+		int [] values = new int [readLength(in, Integer.BYTES)];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + values.length * Integer.BYTES);
+		return values;
+	}
+
+	static void writeLongs ( DataOutputStream out, long [] values ) throws IOException {
+		out.writeInt(values.length);
+		for (long v : values) out.writeLong(v);
+	}
+
+	static long [] readLongs ( ByteBuffer in ) {
+		long [] values = new long [readLength(in, Long.BYTES)];
+		in.asLongBuffer().get(values);
+		in.position(in.position() + values.length * Long.BYTES);
+		return values;
+	}
+
+	static void writeDoubles ( DataOutputStream out, double [] values ) throws IOException {
+		out.writeInt(values.length);
+		for (double v : values) out.writeDouble(v);
+	}
+
+	static double [] readDoubles ( ByteBuffer in ) {
+		double [] values = new double [readLength(in, Double.BYTES)];
+		in.asDoubleBuffer().get(values);
+		in.position(in.position() + values.length * Double.BYTES);
+		return values;
+	}
+
+	static void writeChars ( DataOutputStream out, char [] values ) throws IOException {
+		out.writeInt(values.length);
+		for (char v : values) out.writeChar(v);
+	}
+
+	static char [] readChars ( ByteBuffer in ) {
+		char [] values = new char [readLength(in, Character.BYTES)];
+		in.asCharBuffer().get(values);
+		in.position(in.position() + values.length * Character.BYTES);
+		return values;
+	}
+
+	static void writeString ( DataOutputStream out, String value ) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte [] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString ( ByteBuffer in ) {
+		int length = in.getInt();
+		if (length == -1) return null;
+		if (length < 0 || length > in.remaining())
+			throw new IllegalArgumentException("invalid string length " + length);
+		byte [] bytes = new byte [length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeStrings ( DataOutputStream out, String [] values ) throws IOException {
+		out.writeInt(values.length);
+		for (String v : values) writeString(out, v);
+	}
+
+	static String [] readStrings ( ByteBuffer in ) {
+		//each string takes at least the four bytes of its length
+		String [] values = new String [readLength(in, Integer.BYTES)];
+		for (int i = 0; i < values.length; i++) values[i] = readString(in);
+		return values;
+	}
+
+	/*
+	 * Helper methods used by the indexes to check the arrays they read against each other and against
+	 * the number of rows of the columns, so that a snapshot that does not match its columns is ignored by
+	 * read() instead of failing with ArrayIndexOutOfBoundsException when it is queried.
+	 */
+
+	//the ranges of a table of offsets: offsets[i] to offsets[i+1]-1, for count ranges that cover total values
+	static void checkOffsets ( int [] offsets, int count, int total ) {
+		if (offsets.length != count + 1 || offsets[0] != 0 || offsets[count] != total)
+			throw new IllegalArgumentException("invalid offsets");
+		for (int i = 0; i < count; i++) {
+			if (offsets[i] > offsets[i + 1]) throw new IllegalArgumentException("invalid offsets");
+		}
+	}
+
+	//the ids of each range are row numbers in increasing order, offsets null for a single range
+	static void checkIds ( int [] ids, int [] offsets, int rows ) {
+		int range = 0;
+		for (int i = 0; i < ids.length; i++) {
+			boolean first = i == 0;
+			while (offsets != null && offsets[range + 1] == i) {
+				range++;
+				first = true;
+			}
+			if (ids[i] < 0 || ids[i] >= rows || (!first && ids[i] <= ids[i - 1]))
+				throw new IllegalArgumentException("invalid id " + ids[i]);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package project3;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/* This class assigns consecutive int codes (0, 1, 2, ...) to distinct strings. 
+ * It is used to store columns with many repeated values, such as the cities, as int arrays. 
+ * The null value is represented by the code -1. 
+ */
+
+public class StringDictionary {
+	
+	private final HashMap<String, Integer> codes = new HashMap<String, Integer>(); 
+	private final ArrayList<String> values = new ArrayList<String>(); 
+	
+	/* Returns the code of the value, the value is added to the dictionary if it is not in it yet 
+	 * @param value string to be encoded, possibly null 
+	 * @return code of the value, -1 for null 
+	 */
+	public int encode (String value) {
+		if (value == null) 
+			return -1; 
+		Integer code = codes.get(value); 
+		if (code == null) {
+			code = values.size(); 
+			codes.put(value, code); 
+			values.add(value); 
+		}
+		return code; 
+	}
+	
+	/* Returns the code of the value without adding it to the dictionary 
+	 * @param value string to be looked up 
+	 * @return code of the value, -1 if it is null or not in the dictionary 
+	 */
+	public int codeOf (String value) {
+		if (value == null) 
+			return -1; 
+		Integer code = codes.get(value); 
+		return code == null ? -1 : code; 
+	}
+	
+	/* Returns the value with the specified code 
+	 * @param code code of the value 
+	 * @return the value, or null if code is -1 
+	 */
+	public String decode (int code) {
+		return code < 0 ? null : values.get(code); 
+	}
+	
+	/* Returns the number of distinct values in the dictionary 
+	 * @return the number of distinct values 
+	 */
+	public int size () {
+		return values.size(); 
+	}
+	
+	/* Returns a new dictionary with the same values and codes, to which values can be added without changing this one 
+	 * @return copy of the dictionary 
+	 */
+	StringDictionary copy () {
+		StringDictionary dictionary = new StringDictionary(); 
+		for (String value : values) 
+			dictionary.encode(value); 
+		return dictionary; 
+	}
+	
+	/* Writes the values of the dictionary in the order of their codes 
+	 * @param out stream to write to 
+	 * @throws IOException when the values cannot be written 
+	 */
+	void write (DataOutputStream out) throws IOException {
+		Snapshot.writeStrings(out, values.toArray(new String [0])); 
+	}
+	
+	/* Reads a dictionary written by write() 
+	 * @param in buffer to read from 
+	 * @return dictionary with the same values and codes 
+	 */
+	static StringDictionary read (ByteBuffer in) {
+		StringDictionary dictionary = new StringDictionary(); 
+		for (String value : Snapshot.readStrings(in)) 
+			dictionary.encode(value); 
+		return dictionary; 
+	}
+}
@@ -0,0 +1,140 @@
+package project3;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/* This class is a bounded table of canonical String instances used while the data set is loaded. 
+ * Many entries of the data set repeat on almost every row (states, countries, registration types) 
+ * or on many rows (cities, zip codes, businesses). Replacing each of them with the canonical instance 
+ * of the same value lets all the records share one String object per distinct value, and the 
+ * duplicates become garbage right after they are parsed. 
+ * The table holds at most the specified number of distinct values, once it is full other values are 
+ * returned unchanged. The table can be shared by threads that load parts of the same file. 
+ * It is meant to live only as long as the load, so that it does not keep the values alive afterwards. 
+ * The columns in which a loaded data set is kept (see RecordColumns) are built through a pool as well, 
+ * its statistics are the ones reported by the metrics of the program, since they describe the sharing 
+ * that remains after the load. 
+ */
+
+public class StringPool {
+	
+	//default maximum number of distinct values 
+	public static final int DEFAULT_CAPACITY = 1 << 16; 
+	
+	private final ConcurrentHashMap<String, String> values; 
+	private final int capacity; 
+	
+	private final LongAdder hits = new LongAdder(); 
+	private final LongAdder misses = new LongAdder(); 
+	private final LongAdder bytesSaved = new LongAdder(); 
+	
+	/* Constructs a pool with the default capacity 
+	 */
+	public StringPool () {
+		this(DEFAULT_CAPACITY); 
+	}
+	
+	/* Constructs a pool that holds at most capacity distinct values 
+	 * @param capacity maximum number of distinct values 
+	 * @throws IllegalArgumentException if capacity is negative 
+	 */
+	public StringPool (int capacity) {
+		if (capacity < 0) 
+			throw new IllegalArgumentException("capacity cannot be negative"); 
+		this.capacity = capacity; 
+		this.values = new ConcurrentHashMap<String, String>(Math.min(capacity, 1024)); 
+	}
+	
+	/* Returns the canonical instance of the value 
+	 * @param s value, possibly null 
+	 * @return the canonical instance equal to s, or s itself if it is the first occurrence, 
+	 * if the pool is full or if s is null 
+	 */
+	public String intern (String s) {
+		if (s == null) 
+			return null; 
+		String canonical = values.get(s); 
+		if (canonical == null) {
+			misses.increment(); 
+			if (values.size() >= capacity) 
+				return s; 
+			canonical = values.putIfAbsent(s, s); 
+			if (canonical == null) 
+				return s; 
+		}
+		//an equal value is already shared, even when s is its canonical instance itself 
+		hits.increment(); 
+		bytesSaved.add(sizeOf(canonical)); 
+		return canonical; 
+	}
+	
+	/* Counts the occurrences of a value that already share one instance without going through the pool, 
+	 * for example the rows of a dictionary encoded column that store the code of the value 
+	 * @param s value, possibly null 
+	 * @param occurrences number of occurrences of the value 
+	 */
+	void shared (String s, int occurrences) {
+		if (s == null || occurrences <= 0) 
+			return; 
+		misses.increment(); 
+		hits.add(occurrences - 1); 
+		bytesSaved.add((occurrences - 1) * sizeOf(s)); 
+	}
+	
+	/* Returns the canonical instance of the value from the pool, if there is a pool 
+	 * @param pool pool of canonical values, possibly null 
+	 * @param s value, possibly null 
+	 * @return the canonical instance equal to s, or s itself if pool is null 
+	 */
+	static String intern (StringPool pool, String s) {
+		return pool == null ? s : pool.intern(s); 
+	}
+	
+	/* Returns the number of values that were equal to a value of the pool, each of them shares the canonical instance 
+	 * @return the number of hits 
+	 */
+	public long getHits () {
+		return hits.sum(); 
+	}
+	
+	/* Returns the number of values that were not in the pool when they were interned 
+	 * @return the number of misses 
+	 */
+	public long getMisses () {
+		return misses.sum(); 
+	}
+	
+	/* Returns the number of distinct values in the pool 
+	 * @return the number of distinct values 
+	 */
+	public int size () {
+		return values.size(); 
+	}
+	
+	/* Returns an estimate of the heap memory saved by sharing the canonical instances, 
+	 * the size of the String objects (and their arrays) that were replaced 
+	 * @return the estimated number of bytes saved 
+	 */
+	public long getBytesSaved () {
+		return bytesSaved.sum(); 
+	}
+	
+	/* Returns a summary of the statistics of this pool 
+	 * @return string with the number of values, hits, misses and saved bytes 
+	 */
+	@Override
+	public String toString () {
+		return String.format("%d distinct values, %d hits, %d misses, about %d KB saved", 
+				size(), getHits(), getMisses(), getBytesSaved() / 1024); 
+	}
+	
+	
+	/*
+	 * Helper method that estimates the size of a String: the object header and its fields (24 bytes), 
+	 * the array header (16 bytes) and one byte per character rounded up to 8 bytes (compact strings). 
+	 */
+	private static long sizeOf (String s) {
+		return 24 + 16 + ((s.length() + 7) & ~7); 
+	}
+}
@@ -0,0 +1,166 @@
+package project3;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+
+/* This class is an index of the zip codes of a list of records.
+ * Every zip code that consists of five digits (after the leading zeros are added by Location.changeZip())
+ * is converted once to an int in the range 0..99999. For each such value the index stores the sorted ids
+ * (positions in the list) of the records with that zip code in a single int array.
+ * Zip codes longer than five characters can contain a five digit zip code as a substring, so the ids
+ * of these records are kept in a separate list and checked on every lookup.
+ * The index is immutable once built and does not change when the list of records changes.
+ */
+
+public class ZipIndex {
+
+	private static final int ZIP_CODES = 100000;
+
+	//the ids of the records with zip code z are ids[starts[z]] to ids[starts[z+1]-1]
+	private final int [] starts;
+	private final int [] ids;
+
+	//ids of the records with zip codes longer than five characters
+	private final int [] longZips;
+
+	private ZipIndex (int [] starts, int [] ids, int [] longZips) {
+		this.starts = starts;
+		this.ids = ids;
+		this.longZips = longZips;
+	}
+
+	/* Builds the index for the list of records, the position of each record in the list is its id
+	 * @param records list of records to be indexed
+	 * @return index of the zip codes of the records
+	 */
+	public static ZipIndex build (List<Record> records) {
+		int [] codes = new int [records.size()];
+		int [] starts = new int [ZIP_CODES + 1];
+		int longCount = 0;
+
+		//convert each zip code once and count the records with each value
+		for (int id = 0; id < records.size(); id++) {
+			Location location = records.get(id).getLocation();
+			String zip = (location == null) ? null : location.getZip();
+			codes[id] = (zip == null) ? -1 : toCode(location.changeZip());
+			if (codes[id] >= 0)
+				starts[codes[id] + 1]++;
+			else if (codes[id] == -2)
+				longCount++;
+		}
+		for (int z = 0; z < ZIP_CODES; z++)
+			starts[z + 1] += starts[z];
+
+		//place the ids, in increasing order, into the slot of their zip code
+		int [] ids = new int [starts[ZIP_CODES]];
+		int [] next = Arrays.copyOf(starts, ZIP_CODES);
+		int [] longZips = new int [longCount];
+		int l = 0;
+		for (int id = 0; id < codes.length; id++) {
+			if (codes[id] >= 0)
+				ids[next[codes[id]]++] = id;
+			else if (codes[id] == -2)
+				longZips[l++] = id;
+		}
+		return new ZipIndex(starts, ids, longZips);
+	}
+
+	/* Merges the indexes of two lists of records into the index of the list that contains the records of both
+	 * @param a index of the first list
+	 * @param aIds id in the merged list of each record of the first list
+	 * @param b index of the second list
+	 * @param bIds id in the merged list of each record of the second list
+	 * @return index of the merged list
+	 */
+	static ZipIndex merge (ZipIndex a, int [] aIds, ZipIndex b, int [] bIds) {
+		int [] starts = new int [ZIP_CODES + 1];
+		int [] ids = new int [a.ids.length + b.ids.length];
+		for (int z = 0; z < ZIP_CODES; z++)
+			starts[z + 1] = NameIndex.mergeIds(a.ids, a.starts[z], a.starts[z + 1], aIds,
+					b.ids, b.starts[z], b.starts[z + 1], bIds, ids, starts[z]);
+		int [] longZips = new int [a.longZips.length + b.longZips.length];
+		NameIndex.mergeIds(a.longZips, 0, a.longZips.length, aIds, b.longZips, 0, b.longZips.length, bIds, longZips, 0);
+		return new ZipIndex(starts, ids, longZips);
+	}
+
+	/* Returns the ids of the records whose zip code contains the five character zip argument.
+	 * @param zip five character zip code
+	 * @param records the list of records the index was built for
+	 * @return sorted ids of the matching records, or null if zip is not a five digit zip code
+	 */
+	public int [] lookup (String zip, List<Record> records) {
+		int code = toCode(zip);
+		if (code < 0)
+			return null;
+
+		int from = starts[code];
+		int to = starts[code + 1];
+		if (longZips.length == 0)
+			return Arrays.copyOfRange(ids, from, to);
+
+		//merge the exact matches with the longer zip codes that contain the zip
+		int [] result = new int [to - from + longZips.length];
+		int size = 0;
+		int i = from;
+		for (int id : longZips) {
+			if (!records.get(id).getLocation().changeZip().contains(zip))
+				continue;
+			while (i < to && ids[i] < id)
+				result[size++] = ids[i++];
+			result[size++] = id;
+		}
+		while (i < to)
+			result[size++] = ids[i++];
+		return Arrays.copyOf(result, size);
+	}
+
+	/* Writes the index
+	 * @param out stream to write to
+	 * @throws IOException when the index cannot be written
+	 */
+	void write (DataOutputStream out) throws IOException {
+		Snapshot.writeInts(out, starts);
+		Snapshot.writeInts(out, ids);
+		Snapshot.writeInts(out, longZips);
+	}
+
+	/* Reads an index written by write()
+	 * @param in buffer to read from
+	 * @param rows number of records of the list the index was built for
+	 * @return index with the same content
+	 * @throws IllegalArgumentException when the buffer does not contain a valid index for the number of records
+	 */
+	static ZipIndex read (ByteBuffer in, int rows) throws IllegalArgumentException {
+		int [] starts = Snapshot.readInts(in);
+		int [] ids = Snapshot.readInts(in);
+		int [] longZips = Snapshot.readInts(in);
+		Snapshot.checkOffsets(starts, ZIP_CODES, ids.length);
+		Snapshot.checkIds(ids, starts, rows);
+		Snapshot.checkIds(longZips, null, rows);
+		return new ZipIndex(starts, ids, longZips);
+	}
+
+
+	/*
+	 * Helper method that converts a five digit zip code to an int.
+	 * Returns -2 for zip codes longer than five characters and -1 for all other zip codes.
+	 */
+	private static int toCode (String zip) {
+		if (zip.length() > 5)
+			return -2;
+		if (zip.length() != 5)
+			return -1;
+		int code = 0;
+		for (int i = 0; i < 5; i++) {
+			char c = zip.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			code = code * 10 + (c - '0');
+		}
+		return code;
+	}
+}
@@ -0,0 +1,71 @@
+package project3;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * Verifies that matching a keyword against a record and comparing two records do not allocate.
+ * The number of bytes allocated by the current thread is measured around a large number of calls,
+ * after a warm up that lets the JIT compiler optimize them. The program exits with status 1
+ * if any of the operations allocated memory.
+ *
+ * <pre>{@code
+ *
+ * 		java -cp target/benchmarks.jar project3.AllocationCheck data.csv
+ * }</pre>
+ *
+ */
+
+public class AllocationCheck {
+
+	private static final int CALLS = 5_000_000;
+
+	public static void main(String[] args) throws IOException {
+		Record [] records = RecordLoader.load(new File(args.length > 0 ? args[0] : "data.csv")).toArray(new Record [0]);
+		String keyword = CaseFold.fold("son");
+
+		boolean passed = true;
+		passed &= check("Name.containsFolded", () -> {
+			int count = 0;
+			for (int i = 0; i < CALLS; i++)
+				if (records[i % records.length].getName().containsFolded(keyword)) count++;
+			return count;
+		});
+		passed &= check("Location.containsFolded", () -> {
+			int count = 0;
+			for (int i = 0; i < CALLS; i++)
+				if (records[i % records.length].getLocation().containsFolded(keyword)) count++;
+			return count;
+		});
+		passed &= check("Record.compareTo", () -> {
+			int sum = 0;
+			for (int i = 0; i < CALLS; i++)
+				sum += records[i % records.length].compareTo(records[(i * 31 + 7) % records.length]);
+			return sum;
+		});
+		System.exit(passed ? 0 : 1);
+	}
+
+	/*
+	 * Helper method that runs the operation until it is compiled and then reports the bytes it allocated per call.
+	 */
+	private static boolean check ( String name, IntSupplier operation ) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		int result = 0;
+		for (int i = 0; i < 10; i++) {
+			result += operation.getAsInt();
+		}
+
+		long before = threads.getThreadAllocatedBytes(id);
+		result += operation.getAsInt();
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+		//the measurement itself can allocate a few bytes, anything below one byte per thousand calls is noise
+		boolean passed = allocated < CALLS / 1000;
+		System.out.printf("%-20s %8.4f bytes/call  %s  (%d)%n", name, (double) allocated / CALLS, passed ? "OK" : "FAILED", result);
+		return passed;
+	}
+}
@@ -0,0 +1,72 @@
+package project3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the record comparisons and keyword matching used by the sorts and the scans.
+ * Run with {@code -prof gc}, the {@code gc.alloc.rate.norm} of all of them should be 0 B/op
+ * (see also {@link AllocationCheck}).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompareBenchmark {
+
+	@Param({"data.csv"})
+	public String source;
+
+	private Record [] records;
+	private String keyword;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		records = RecordLoader.load(new File(source)).toArray(new Record [0]);
+		//shuffle with a fixed seed so that neighbouring records are not already ordered
+		Collections.shuffle(Arrays.asList(records), new Random(42));
+		keyword = CaseFold.fold("son");
+	}
+
+	@Benchmark
+	public int recordCompareTo() {
+		int i = next;
+		next = (i + 1) % (records.length - 1);
+		return records[i].compareTo(records[i + 1]);
+	}
+
+	@Benchmark
+	public boolean nameContains() {
+		int i = next;
+		next = (i + 1) % records.length;
+		return records[i].getName().containsFolded(keyword);
+	}
+
+	@Benchmark
+	public boolean cityContains() {
+		int i = next;
+		next = (i + 1) % records.length;
+		return records[i].getLocation().containsFolded(keyword);
+	}
+}
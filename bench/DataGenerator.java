@@ -0,0 +1,101 @@
+package project3;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Generates synthetic data sets of any size from the rows of {@code data.csv}.
+ *
+ * <p>The rows of the source file are repeated until the requested number of rows is written.
+ * Every repetition after the first one gets a different suffix appended to the last names,
+ * so that the number of distinct names (and the sizes of the name query results) grows with
+ * the size of the file, while the cities, zip codes and businesses keep their distribution.
+ *
+ * <pre>{@code
+ *
+ * 		java -cp target/benchmarks.jar project3.DataGenerator data.csv data-10m.csv 10000000
+ * }</pre>
+ *
+ */
+
+public class DataGenerator {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3 ) {
+			System.err.println("Usage: DataGenerator SOURCE_FILE OUTPUT_FILE NUMBER_OF_ROWS\n");
+			System.exit(1);
+		}
+		generate( new File(args[0]), new File(args[1]), Integer.parseInt(args[2]) );
+	}
+
+	/**
+	 * Writes a file with the header row of the source file followed by the specified number of data rows.
+	 * @param source file with the header row and the data rows to repeat
+	 * @param output file to write
+	 * @param rows number of data rows to write
+	 * @throws IOException when the source file cannot be read or the output file cannot be written
+	 * @throws IllegalArgumentException when the source file has no data rows
+	 */
+	public static void generate ( File source, File output, int rows ) throws IOException {
+		ArrayList<ArrayList<String>> sourceRows = new ArrayList<ArrayList<String>>();
+		ArrayList<String> header;
+		try (CSVStream csv = new CSVStream(new FileInputStream(source))) {
+			header = csv.hasNext() ? csv.next() : new ArrayList<String>();
+			while (csv.hasNext()) {
+				sourceRows.add(csv.next());
+			}
+		}
+		if (sourceRows.isEmpty()) throw new IllegalArgumentException("no data rows in " + source);
+
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8), 1 << 16)) {
+			writeRow(out, header);
+			for (int i = 0; i < rows; i++) {
+				ArrayList<String> row = sourceRows.get(i % sourceRows.size());
+				int copy = i / sourceRows.size();
+				if (copy > 0 && row.size() > RecordLoader.LAST_NAME) {
+					row = new ArrayList<String>(row);
+					row.set(RecordLoader.LAST_NAME, row.get(RecordLoader.LAST_NAME) + suffix(copy));
+				}
+				writeRow(out, row);
+			}
+		}
+	}
+
+	/*
+	 * Helper method that converts the copy number to a suffix made of letters, for example 1 -> "B", 26 -> "BA".
+	 */
+	private static String suffix ( int copy ) {
+		StringBuilder sb = new StringBuilder();
+		do {
+			sb.append( (char) ('A' + copy % 26) );
+			copy /= 26;
+		} while (copy > 0);
+		return sb.reverse().toString();
+	}
+
+	/*
+	 * Helper method that writes a single row, entries with reserved characters are surrounded by quotes.
+	 */
+	private static void writeRow ( Writer out, ArrayList<String> row ) throws IOException {
+		for (int i = 0; i < row.size(); i++) {
+			if (i > 0) out.write(',');
+			String entry = row.get(i);
+			if (entry.indexOf(',') >= 0 || entry.indexOf('\n') >= 0) {
+				out.write('"');
+				out.write(entry);
+				out.write('"');
+			}
+			else {
+				out.write(entry);
+			}
+		}
+		out.write('\n');
+	}
+}
@@ -0,0 +1,101 @@
+package project3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of reading the data set: parsing the CSV file and building the {@link Record} objects.
+ * The data files are generated from {@code data.csv} (see {@link DataGenerator}).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class IngestBenchmark {
+
+	@Param({"32000", "1000000"})
+	public int rows;
+
+	@Param({"data.csv"})
+	public String source;
+
+	private File file;
+	private ArrayList<ArrayList<String>> parsedRows;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = File.createTempFile("records-" + rows + "-", ".csv");
+		DataGenerator.generate(new File(source), file, rows);
+
+		parsedRows = new ArrayList<ArrayList<String>>();
+		try (CSVStream csv = new CSVStream(new FileInputStream(file))) {
+			csv.next();
+			while (csv.hasNext()) {
+				parsedRows.add(csv.next());
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file.toPath());
+	}
+
+	@Benchmark
+	public int parseWholeFile() throws IOException {
+		CSV csv = new CSV(new Scanner(file));
+		return csv.getNumOfRows();
+	}
+
+	@Benchmark
+	public int parseStream() throws IOException {
+		int count = 0;
+		try (CSVStream csv = new CSVStream(new FileInputStream(file))) {
+			while (csv.hasNext()) {
+				csv.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public void buildRecords(Blackhole bh) {
+		for (ArrayList<String> row : parsedRows) {
+			bh.consume(RecordLoader.toRecord(row));
+		}
+	}
+
+	@Benchmark
+	public RecordList loadSerial() throws IOException {
+		return RecordLoader.load(file);
+	}
+
+	@Benchmark
+	public RecordList loadParallel() throws IOException {
+		return RecordLoader.loadParallel(file);
+	}
+}
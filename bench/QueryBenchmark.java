@@ -0,0 +1,87 @@
+package project3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link RecordList} queries with selective and broad keywords.
+ * The indexed list is the one returned by the loader, the unindexed list holds the same records
+ * but has no indexes, so its queries scan and sort.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class QueryBenchmark {
+
+	@Param({"32000", "1000000"})
+	public int rows;
+
+	@Param({"data.csv"})
+	public String source;
+
+	@Param({"true", "false"})
+	public boolean indexed;
+
+	private RecordList records;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File file = File.createTempFile("records-" + rows + "-", ".csv");
+		try {
+			DataGenerator.generate(new File(source), file, rows);
+			records = RecordLoader.loadParallel(file);
+		}
+		finally {
+			Files.deleteIfExists(file.toPath());
+		}
+		if (!indexed) {
+			RecordList copy = new RecordList();
+			copy.addAll(records);
+			records = copy;
+		}
+	}
+
+	@Benchmark
+	public RecordList nameSelective() {
+		return records.getByName("abdelrazek");
+	}
+
+	@Benchmark
+	public RecordList nameBroad() {
+		return records.getByName("a");
+	}
+
+	@Benchmark
+	public RecordList citySelective() {
+		return records.getByCity("valley stream");
+	}
+
+	@Benchmark
+	public RecordList cityBroad() {
+		return records.getByCity("new");
+	}
+
+	@Benchmark
+	public RecordList zip() {
+		return records.getByZip("11223");
+	}
+}
@@ -0,0 +1,82 @@
+package project3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test of the {@link QueryServer}. The server is started in this process and queried by an increasing
+ * number of client threads, each sending the next request as soon as it receives the previous response.
+ * For every number of clients the program reports the throughput and the latency percentiles seen by the clients.
+ *
+ * <pre>{@code
+ *
+ * 		java -cp target/benchmarks.jar project3.ServerLoad data.csv [SECONDS_PER_STEP]
+ * }</pre>
+ *
+ */
+
+public class ServerLoad {
+
+	private static final String [] QUERIES = {
+		"/name?q=smith&limit=20", "/name?q=son&limit=20", "/city?q=brooklyn&limit=20", "/city?q=new&limit=50",
+		"/zip?q=11223", "/zip?q=10001", "/near?lat=40.7128&lon=-74.0060&radius=2&limit=20", "/name?q=abdel"
+	};
+
+	public static void main(String[] args) throws Exception {
+		RecordList records = RecordLoader.loadParallel(new File(args.length > 0 ? args[0] : "data.csv"));
+		long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+		int maxClients = 4 * Runtime.getRuntime().availableProcessors();
+
+		try (QueryServer server = new QueryServer(new QueryEngine(records), 0)) {
+			server.start();
+			String base = "http://localhost:" + server.getPort();
+			run(base, 2, 2);  //warm up
+			System.out.printf("%8s %12s %10s %10s %10s%n", "clients", "requests/s", "p50 ms", "p99 ms", "max ms");
+			for (int clients = 1; clients <= maxClients; clients *= 2) {
+				LatencyHistogram latencies = run(base, clients, seconds);
+				System.out.printf("%8d %12.0f %10.3f %10.3f %10.3f%n", clients, latencies.count() / (double) seconds,
+						latencies.percentile(0.5) / 1e6, latencies.percentile(0.99) / 1e6, latencies.max() / 1e6);
+			}
+			System.out.println("server side: " + server.getLatencies());
+		}
+	}
+
+	/*
+	 * Helper method that sends requests from the clients for the number of seconds.
+	 */
+	private static LatencyHistogram run ( String base, int clients, long seconds ) throws InterruptedException {
+		LatencyHistogram latencies = new LatencyHistogram();
+		long end = System.nanoTime() + seconds * 1_000_000_000L;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int c = 0; c < clients; c++) {
+			Thread thread = new Thread( () -> {
+				byte [] buffer = new byte [1 << 16];
+				while (System.nanoTime() < end) {
+					String query = QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)];
+					long start = System.nanoTime();
+					try {
+						HttpURLConnection connection = (HttpURLConnection) new URL(base + query).openConnection();
+						try (InputStream in = connection.getInputStream()) {
+							while (in.read(buffer) >= 0) { }
+						}
+					}
+					catch (IOException ex) {
+						throw new RuntimeException(ex);
+					}
+					latencies.record(System.nanoTime() - start);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads)
+			thread.join();
+		return latencies;
+	}
+}